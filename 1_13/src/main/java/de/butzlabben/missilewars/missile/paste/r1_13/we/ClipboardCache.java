@@ -0,0 +1,286 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.missile.paste.r1_13.we;
+
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.bukkit.BukkitAdapter;
+import com.sk89q.worldedit.extent.clipboard.BlockArrayClipboard;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
+import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.math.transform.AffineTransform;
+import com.sk89q.worldedit.regions.CuboidRegion;
+import com.sk89q.worldedit.world.block.BlockState;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+
+/**
+ * This class keeps the parsed clipboards of the schematics together with their
+ * rotated variants. An entry is parsed again, when the file was modified or when
+ * it is reloaded. The cache is shared by all arenas, which use the same schematic.
+ */
+public class ClipboardCache {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private final Map<File, CachedClipboard> clipboards = new ConcurrentHashMap<>();
+    // If the schematic folders are watched, the files are not checked for changes on every access.
+    private volatile boolean watched;
+
+    /**
+     * This method returns the clipboard of the schematic, rotated around its origin.
+     *
+     * @param schematic (File) the schematic file
+     * @param rotation (int) the rotation around the y-axis in degrees
+     *
+     * @return (Clipboard) the rotated clipboard
+     */
+    public Clipboard get(File schematic, int rotation) throws IOException, WorldEditException {
+        CachedClipboard cached = load(schematic);
+        int normalized = Math.floorMod(rotation, 360);
+
+        Clipboard clipboard = cached.rotations.get(normalized);
+        if (clipboard != null) return clipboard;
+
+        clipboard = rotate(cached.rotations.get(0), normalized);
+        cached.rotations.put(normalized, clipboard);
+        return clipboard;
+    }
+
+    /**
+     * This method parses the schematic and creates all rotated variants, if the
+     * schematic is not cached yet or was modified since.
+     *
+     * @param schematic (File) the schematic file
+     */
+    public void preload(File schematic) throws IOException, WorldEditException {
+        load(schematic);
+    }
+
+    /**
+     * This method parses the schematic again and replaces the cached version at once.
+     * Pastes, which already got the old clipboard, keep using it.
+     *
+     * @param schematic (File) the schematic file
+     */
+    public void reload(File schematic) throws IOException, WorldEditException {
+        File key = schematic.getAbsoluteFile();
+        clipboards.put(key, parse(key));
+    }
+
+    /**
+     * This method sets, whether the schematic files are watched for changes. Watched
+     * schematics are only parsed again with {@link #reload(File)}, so the cache
+     * doesn't access the file system, once a schematic is cached.
+     *
+     * @param watched (boolean) true, if the schematic folders are watched
+     */
+    public void setWatched(boolean watched) {
+        this.watched = watched;
+    }
+
+    /**
+     * This method calls the consumer for every block of the rotated schematic,
+     * except air. The position is relative to the origin of the schematic and the
+     * block is given as block state string, e.g. "minecraft:piston[facing=north]".
+     *
+     * @param schematic (File) the schematic file
+     * @param rotation (int) the rotation around the y-axis in degrees
+     * @param consumer (BiConsumer) the consumer of the position and the block state
+     */
+    public void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException, WorldEditException {
+        forEachBlock(get(schematic, rotation), consumer);
+    }
+
+    /**
+     * This method calls the consumer for every block of the clipboard, except air,
+     * e.g. for the clipboard, which was just pasted.
+     *
+     * @param clipboard (Clipboard) the clipboard
+     * @param consumer (BiConsumer) the consumer of the position and the block state
+     */
+    public static void forEachBlock(Clipboard clipboard, BiConsumer<int[], String> consumer) {
+        BlockVector3 origin = clipboard.getOrigin();
+
+        for (BlockVector3 position : clipboard.getRegion()) {
+            BlockState block = clipboard.getBlock(position);
+            if (block.getBlockType().getMaterial().isAir()) continue;
+
+            consumer.accept(new int[] {position.getBlockX() - origin.getBlockX(), position.getBlockY() - origin.getBlockY(),
+                    position.getBlockZ() - origin.getBlockZ()}, block.getAsString());
+        }
+    }
+
+    /**
+     * This method returns the positions of all blocks of the given type in the
+     * pasted clipboard, relative to its origin. So they belong to the version of
+     * the schematic, which was pasted, even if it was reloaded since. The positions
+     * are only searched once per cached version, rotation and type.
+     *
+     * @param schematic (File) the schematic file
+     * @param clipboard (Clipboard) the pasted clipboard of the schematic
+     * @param rotation (int) the rotation around the y-axis in degrees
+     * @param type (Material) the block type
+     *
+     * @return (List) the x, y and z offsets to the origin
+     */
+    public List<int[]> getPositions(File schematic, Clipboard clipboard, int rotation, Material type) {
+        CachedClipboard cached = clipboards.get(schematic.getAbsoluteFile());
+        boolean current = (cached != null) && (cached.rotations.get(Math.floorMod(rotation, 360)) == clipboard);
+        String key = Math.floorMod(rotation, 360) + ":" + type.getKey();
+
+        if (current) {
+            List<int[]> positions = cached.positions.get(key);
+            if (positions != null) return positions;
+        }
+
+        String id = type.getKey().toString();
+        List<int[]> found = new ArrayList<>();
+        forEachBlock(clipboard, (position, state) -> {
+            if (state.equals(id) || state.startsWith(id + "[")) found.add(position);
+        });
+        if (current) cached.positions.put(key, found);
+        return found;
+    }
+
+    /**
+     * This method caches a compiled schematic, so that the schematic file doesn't
+     * have to be parsed. Each layout contains four values per block: the x, y and z
+     * offset to the origin and the index of the block state in the palette. Nothing
+     * is done, if the same version of the schematic is already cached.
+     *
+     * @param schematic (File) the schematic file
+     * @param modificationTime (long) the modification time of the compiled schematic file
+     * @param palette (String[]) the block states of the schematic
+     * @param layouts (Map) the layout for each rotation
+     */
+    public void putCompiled(File schematic, long modificationTime, String[] palette, Map<Integer, int[]> layouts) throws WorldEditException {
+        File key = schematic.getAbsoluteFile();
+        CachedClipboard cached = clipboards.get(key);
+        if (cached != null && cached.modificationTime == modificationTime) return;
+
+        BlockState[] states = new BlockState[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            states[i] = BukkitAdapter.adapt(Bukkit.createBlockData(palette[i]));
+        }
+
+        cached = new CachedClipboard(modificationTime);
+        for (Map.Entry<Integer, int[]> layout : layouts.entrySet()) {
+            cached.rotations.put(Math.floorMod(layout.getKey(), 360), toClipboard(layout.getValue(), states));
+        }
+        clipboards.put(key, cached);
+    }
+
+    private Clipboard toClipboard(int[] layout, BlockState[] states) throws WorldEditException {
+        int minX = 0, minY = 0, minZ = 0, maxX = 0, maxY = 0, maxZ = 0;
+        for (int i = 0; i < layout.length; i += 4) {
+            minX = Math.min(minX, layout[i]);
+            minY = Math.min(minY, layout[i + 1]);
+            minZ = Math.min(minZ, layout[i + 2]);
+            maxX = Math.max(maxX, layout[i]);
+            maxY = Math.max(maxY, layout[i + 1]);
+            maxZ = Math.max(maxZ, layout[i + 2]);
+        }
+
+        BlockArrayClipboard clipboard = new BlockArrayClipboard(new CuboidRegion(BlockVector3.at(minX, minY, minZ), BlockVector3.at(maxX, maxY, maxZ)));
+        clipboard.setOrigin(BlockVector3.ZERO);
+        for (int i = 0; i < layout.length; i += 4) {
+            clipboard.setBlock(BlockVector3.at(layout[i], layout[i + 1], layout[i + 2]), states[layout[i + 3]]);
+        }
+        return clipboard;
+    }
+
+    private CachedClipboard load(File schematic) throws IOException, WorldEditException {
+        File key = schematic.getAbsoluteFile();
+
+        CachedClipboard cached = clipboards.get(key);
+        if (cached != null && (watched || cached.modificationTime == key.lastModified())) return cached;
+
+        cached = parse(key);
+        clipboards.put(key, cached);
+        return cached;
+    }
+
+    private CachedClipboard parse(File key) throws IOException, WorldEditException {
+        long modificationTime = key.lastModified();
+
+        Clipboard clipboard;
+        ClipboardFormat format = ClipboardFormats.findByFile(key);
+        if (format == null) throw new IOException("Unknown schematic format of " + key.getName());
+        try (ClipboardReader reader = format.getReader(new FileInputStream(key))) {
+            clipboard = reader.read();
+        }
+
+        CachedClipboard cached = new CachedClipboard(modificationTime);
+        cached.rotations.put(0, clipboard);
+        for (int rotation : ROTATIONS) {
+            if (rotation != 0) cached.rotations.put(rotation, rotate(clipboard, rotation));
+        }
+
+        return cached;
+    }
+
+    /**
+     * This method copies the clipboard into a new clipboard, which is rotated around
+     * the same origin. Block states, like the facing of pistons, are rotated as well.
+     */
+    private Clipboard rotate(Clipboard clipboard, int rotation) throws WorldEditException {
+        if (rotation == 0) return clipboard;
+
+        AffineTransform transform = new AffineTransform().rotateY(rotation);
+        BlockVector3 origin = clipboard.getOrigin();
+        BlockVector3 min = transform.apply(clipboard.getMinimumPoint().subtract(origin).toVector3()).round().toBlockPoint().add(origin);
+        BlockVector3 max = transform.apply(clipboard.getMaximumPoint().subtract(origin).toVector3()).round().toBlockPoint().add(origin);
+
+        BlockArrayClipboard rotated = new BlockArrayClipboard(new CuboidRegion(min, max));
+        rotated.setOrigin(origin);
+
+        ForwardExtentCopy copy = new ForwardExtentCopy(new BlockTransformExtent(clipboard, transform), clipboard.getRegion(), origin, rotated, origin);
+        copy.setTransform(transform);
+        copy.setSourceMask(new ExistingBlockMask(clipboard));
+        Operations.complete(copy);
+
+        return rotated;
+    }
+
+    private static class CachedClipboard {
+
+        private final long modificationTime;
+        private final Map<Integer, Clipboard> rotations = new ConcurrentHashMap<>();
+        private final Map<String, List<int[]>> positions = new ConcurrentHashMap<>();
+
+        private CachedClipboard(long modificationTime) {
+            this.modificationTime = modificationTime;
+        }
+    }
+}
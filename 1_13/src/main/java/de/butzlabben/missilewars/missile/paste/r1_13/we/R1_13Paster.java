@@ -20,25 +20,31 @@ package de.butzlabben.missilewars.missile.paste.r1_13.we;
 
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
+import com.sk89q.worldedit.extent.Extent;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardReader;
-import com.sk89q.worldedit.extent.transform.BlockTransformExtent;
 import com.sk89q.worldedit.function.mask.ExistingBlockMask;
 import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
 import com.sk89q.worldedit.function.operation.Operation;
 import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import com.sk89q.worldedit.world.World;
 import java.io.File;
 import java.io.FileInputStream;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -51,44 +57,24 @@ import org.bukkit.util.Vector;
  */
 public class R1_13Paster {
 
+    private final ClipboardCache clipboardCache = new ClipboardCache();
+    // The pending batches are only used on the server thread.
+    private final Map<org.bukkit.World, List<BatchedPaste>> batches = new HashMap<>();
+
     public void pasteMissile(File schematic, org.bukkit.util.Vector pos, int rotation, org.bukkit.World world,
                              Material glassBlockReplace, int radius, Material replaceType, JavaPlugin plugin, int replaceTicks) {
         try {
             World weWorld = new BukkitWorld(world);
-            ClipboardFormat format = ClipboardFormats.findByFile(schematic);
-
-            try (ClipboardReader reader = format.getReader(new FileInputStream(schematic));
-                 EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
-                ClipboardHolder clipboardHolder = new ClipboardHolder(reader.read());
-                Clipboard clipboard = clipboardHolder.getClipboard();
-                AffineTransform transform = new AffineTransform();
-                transform = transform.rotateY(rotation);
-
-                BlockTransformExtent extent = new BlockTransformExtent(clipboard, transform);
-                ForwardExtentCopy copy = new ForwardExtentCopy(new BlockFilterExtent(extent, glassBlockReplace), clipboard.getRegion(), clipboard.getOrigin(), editSession, BlockVector3.at(pos.getX(), pos.getY(), pos.getZ()));
-                copy.setTransform(transform);
+            Clipboard clipboard = clipboardCache.get(schematic, rotation);
+
+            try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
+                ForwardExtentCopy copy = new ForwardExtentCopy(new BlockFilterExtent(clipboard, glassBlockReplace), clipboard.getRegion(), clipboard.getOrigin(), editSession, BlockVector3.at(pos.getX(), pos.getY(), pos.getZ()));
                 copy.setSourceMask(new ExistingBlockMask(clipboard));
 
                 Operations.complete(copy);
             }
 
-            // Replace given blocks
-            Set<Block> replace = new HashSet<>();
-            BlockVector3 min = BlockVector3.at(pos.getX() - radius, pos.getY() - radius, pos.getZ() - radius);
-            BlockVector3 max = BlockVector3.at(pos.getX() + radius, pos.getY() + radius, pos.getZ() + radius);
-            for (BlockVector3 v : new CuboidRegion(min, max)) {
-                Block b = world.getBlockAt(v.getBlockX(), v.getBlockY(), v.getBlockZ());
-                if (b.getType() == replaceType) {
-                    replace.add(b);
-                }
-            }
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    replace.forEach(b -> b.setType(Material.AIR));
-                }
-            }.runTaskLater(plugin, replaceTicks);
-
+            scheduleReplace(schematic, clipboard, rotation, pos, world, radius, replaceType, plugin, replaceTicks);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -98,10 +84,8 @@ public class R1_13Paster {
         try {
             World weWorld = new BukkitWorld(world);
 
-            ClipboardFormat format = ClipboardFormats.findByFile(schematic);
-            try (ClipboardReader reader = format.getReader(new FileInputStream(schematic));
-                 EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
-                ClipboardHolder clipboard = new ClipboardHolder(reader.read());
+            try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
+                ClipboardHolder clipboard = new ClipboardHolder(clipboardCache.get(schematic, 0));
 
                 Operation operation = clipboard
                         .createPaste(editSession)
@@ -115,4 +99,239 @@ public class R1_13Paster {
             e.printStackTrace();
         }
     }
+
+    /**
+     * This method pastes the missile together with the other pastes of the world in
+     * this tick, see {@link #addToBatch}. The start replace task is scheduled after
+     * the paste.
+     * The blocks of the pasted clipboard are given to pastedBlocks, if it isn't null.
+     *
+     * @return (CompletableFuture) completes on the server thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteMissileBatched(File schematic, Vector pos, int rotation, org.bukkit.World world,
+                                                       Material glassBlockReplace, int radius, Material replaceType, JavaPlugin plugin, int replaceTicks,
+                                                       BiConsumer<int[], String> pastedBlocks) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, rotation, pos, glassBlockReplace,
+                clipboard -> {
+                    if (pastedBlocks != null) ClipboardCache.forEachBlock(clipboard, pastedBlocks);
+                    scheduleReplace(schematic, clipboard, rotation, pos, world, radius, replaceType, plugin, replaceTicks);
+                }));
+    }
+
+    /**
+     * This method pastes the schematic together with the other pastes of the world
+     * in this tick, see {@link #addToBatch}.
+     *
+     * @return (CompletableFuture) completes on the server thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteSchematicBatched(File schematic, Vector pos, org.bukkit.World world, JavaPlugin plugin) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, 0, pos, null, null));
+    }
+
+    /**
+     * This method adds the paste to the batch of the world. All pastes of a world,
+     * which are added until the next {@link #flushBatches()}, are pasted together
+     * through one edit session. So the session is only created and flushed once
+     * per batch instead of once per paste. Batches, which aren't flushed by the
+     * caller, are pasted at the next tick.
+     */
+    private CompletableFuture<Void> addToBatch(org.bukkit.World world, JavaPlugin plugin, BatchedPaste paste) {
+        List<BatchedPaste> batch = batches.get(world);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            batches.put(world, batch);
+            Bukkit.getScheduler().runTask(plugin, () -> pasteBatch(world, batches.remove(world)));
+        }
+        batch.add(paste);
+        return paste.future;
+    }
+
+    /**
+     * This method pastes all pending batches now. It must be called on the server
+     * thread.
+     */
+    public void flushBatches() {
+        if (batches.isEmpty()) return;
+
+        List<org.bukkit.World> worlds = new ArrayList<>(batches.keySet());
+        for (org.bukkit.World world : worlds) {
+            pasteBatch(world, batches.remove(world));
+        }
+    }
+
+    private void pasteBatch(org.bukkit.World world, List<BatchedPaste> batch) {
+        // The batch was already flushed in this tick.
+        if (batch == null) return;
+
+        List<BatchedPaste> pasted = new ArrayList<>();
+
+        try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(new BukkitWorld(world), -1)) {
+            for (BatchedPaste paste : batch) {
+                try {
+                    Clipboard clipboard = clipboardCache.get(paste.schematic, paste.rotation);
+                    paste.clipboard = clipboard;
+                    Extent source = (paste.glassBlockReplace == null) ? clipboard : new BlockFilterExtent(clipboard, paste.glassBlockReplace);
+
+                    ForwardExtentCopy copy = new ForwardExtentCopy(source, clipboard.getRegion(), clipboard.getOrigin(), editSession,
+                            BlockVector3.at(paste.position.getX(), paste.position.getY(), paste.position.getZ()));
+                    copy.setSourceMask(new ExistingBlockMask(clipboard));
+                    Operations.complete(copy);
+                    pasted.add(paste);
+                } catch (Exception e) {
+                    paste.future.completeExceptionally(e);
+                }
+            }
+        } catch (Exception e) {
+            batch.forEach(paste -> paste.future.completeExceptionally(e));
+            return;
+        }
+
+        for (BatchedPaste paste : pasted) {
+            try {
+                if (paste.afterPaste != null) paste.afterPaste.run(paste.clipboard);
+                paste.future.complete(null);
+            } catch (Exception e) {
+                paste.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * This method schedules the task, which replaces the start blocks of the missile
+     * with air. Their positions are taken from the pasted clipboard, so no blocks
+     * have to be searched.
+     */
+    private void scheduleReplace(File schematic, Clipboard clipboard, int rotation, Vector pos, org.bukkit.World world,
+                                 int radius, Material replaceType, JavaPlugin plugin, int replaceTicks) {
+        List<Block> replace = new ArrayList<>();
+        for (int[] offset : clipboardCache.getPositions(schematic, clipboard, rotation, replaceType)) {
+            if (Math.abs(offset[0]) > radius || Math.abs(offset[1]) > radius || Math.abs(offset[2]) > radius) continue;
+
+            replace.add(world.getBlockAt(pos.getBlockX() + offset[0], pos.getBlockY() + offset[1], pos.getBlockZ() + offset[2]));
+        }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                replace.forEach(b -> b.setType(Material.AIR));
+            }
+        }.runTaskLater(plugin, replaceTicks);
+    }
+
+    /**
+     * This method parses the schematic and its rotated variants into the cache, so
+     * that the first paste doesn't have to read the file.
+     */
+    public void preloadSchematic(File schematic) {
+        try {
+            clipboardCache.preload(schematic);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * This method parses the schematic again and replaces the cached version.
+     */
+    public void reloadSchematic(File schematic) {
+        try {
+            clipboardCache.reload(schematic);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void setSchematicsWatched(boolean watched) {
+        clipboardCache.setWatched(watched);
+    }
+
+    /**
+     * This method caches the compiled schematic instead of parsing the schematic
+     * file. If the compiled blocks can't be used (e.g. unknown block states), the
+     * schematic file is parsed instead.
+     */
+    public void preloadCompiled(File schematic, long modificationTime, String[] palette, Map<Integer, int[]> layouts) {
+        try {
+            clipboardCache.putCompiled(schematic, modificationTime, palette, layouts);
+        } catch (Exception e) {
+            e.printStackTrace();
+            preloadSchematic(schematic);
+        }
+    }
+
+    /**
+     * This method calls the consumer for every block of the rotated schematic,
+     * except air, with its position relative to the origin and its block state.
+     */
+    public void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException {
+        try {
+            clipboardCache.forEachBlock(schematic, rotation, consumer);
+        } catch (WorldEditException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * This method loads the schematic and splits the paste into horizontal layers.
+     * Each returned step pastes the next layers with its own edit session, so that
+     * the caller can run one step per tick.
+     * The schematic is read on the calling thread, which can be an async thread.
+     */
+    public List<Runnable> prepareSchematicPaste(File schematic, Vector pos, org.bukkit.World world, int layersPerStep) throws IOException {
+        World weWorld = new BukkitWorld(world);
+        Clipboard clipboard;
+
+        ClipboardFormat format = ClipboardFormats.findByFile(schematic);
+        if (format == null) throw new IOException("Unknown schematic format of " + schematic.getName());
+        try (ClipboardReader reader = format.getReader(new FileInputStream(schematic))) {
+            clipboard = reader.read();
+        }
+
+        BlockVector3 min = clipboard.getRegion().getMinimumPoint();
+        BlockVector3 max = clipboard.getRegion().getMaximumPoint();
+        BlockVector3 to = BlockVector3.at(pos.getX(), pos.getY(), pos.getZ());
+        int layers = Math.max(1, layersPerStep);
+
+        List<Runnable> steps = new ArrayList<>();
+        for (int y = min.getBlockY(); y <= max.getBlockY(); y += layers) {
+            CuboidRegion region = new CuboidRegion(min.withY(y), max.withY(Math.min(max.getBlockY(), y + layers - 1)));
+
+            steps.add(() -> {
+                try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
+                    ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, region, clipboard.getOrigin(), editSession, to);
+                    copy.setSourceMask(new ExistingBlockMask(clipboard));
+                    Operations.complete(copy);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            });
+        }
+        return steps;
+    }
+
+    @FunctionalInterface
+    private interface AfterPaste {
+
+        void run(Clipboard clipboard) throws Exception;
+    }
+
+    private static class BatchedPaste {
+
+        private final File schematic;
+        private final int rotation;
+        private final Vector position;
+        // The glass blocks of a missile are replaced with the glass of the team.
+        private final Material glassBlockReplace;
+        private final AfterPaste afterPaste;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        // The clipboard, which was pasted. A reload of the schematic doesn't change it.
+        private Clipboard clipboard;
+
+        private BatchedPaste(File schematic, int rotation, Vector position, Material glassBlockReplace, AfterPaste afterPaste) {
+            this.schematic = schematic;
+            this.rotation = rotation;
+            this.position = position;
+            this.glassBlockReplace = glassBlockReplace;
+            this.afterPaste = afterPaste;
+        }
+    }
 }
@@ -19,16 +19,29 @@
 package de.butzlabben.missilewars.missile.paste.r1_16.fawe;
 
 import com.sk89q.worldedit.EditSession;
+import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitWorld;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormat;
 import com.sk89q.worldedit.extent.clipboard.io.ClipboardFormats;
+import com.sk89q.worldedit.function.mask.ExistingBlockMask;
+import com.sk89q.worldedit.function.operation.ForwardExtentCopy;
+import com.sk89q.worldedit.function.operation.Operations;
 import com.sk89q.worldedit.math.BlockVector3;
-import com.sk89q.worldedit.math.transform.AffineTransform;
 import com.sk89q.worldedit.regions.CuboidRegion;
 import com.sk89q.worldedit.world.World;
 import java.io.File;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.plugin.java.JavaPlugin;
@@ -40,52 +53,340 @@ import org.bukkit.util.Vector;
  */
 public class R1_16Paster {
 
+    // The async pastes run one after another, so that overlapping pastes keep their order.
+    private static final ExecutorService PASTE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MissileWars-Paste");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ClipboardCache clipboardCache = new ClipboardCache(this::closeLater);
+    // The pending batches are only used on the server thread.
+    private final Map<org.bukkit.World, List<BatchedPaste>> batches = new HashMap<>();
+    private final Map<org.bukkit.World, List<BatchedPaste>> syncBatches = new HashMap<>();
+
     public void pasteMissile(File schematic, Vector pos, int rotation, org.bukkit.World world,
                              Material glassBlockReplace, int radius, Material replaceType, JavaPlugin plugin, int replaceTicks) {
         World weWorld = new BukkitWorld(world);
 
-        try (Clipboard clipboard = ClipboardFormats.findByFile(schematic).load(schematic)) {
+        try {
+            Clipboard clipboard = clipboardCache.get(schematic, rotation);
+            clipboard.paste(weWorld, fromBukkitVector(pos), false, false, null);
 
-            AffineTransform transform = new AffineTransform();
-            transform = transform.rotateY(rotation);
+            scheduleReplace(schematic, clipboard, rotation, pos, world, radius, replaceType, plugin, replaceTicks);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            clipboard.paste(weWorld, fromBukkitVector(pos), false, false, transform);
+    public void pasteSchematic(File schematic, Vector pos, org.bukkit.World world) {
+        World weWorld = new BukkitWorld(world);
 
-            // Replace given blocks
-            Set<Block> replace = new HashSet<>();
-            Vector min = new Vector(pos.getX() - radius, pos.getY() - radius, pos.getZ() - radius);
-            Vector max = new Vector(pos.getX() + radius, pos.getY() + radius, pos.getZ() + radius);
-            for (BlockVector3 v : new CuboidRegion(fromBukkitVector(min), fromBukkitVector(max))) {
-                Block b = world.getBlockAt(v.getBlockX(), v.getBlockY(), v.getBlockZ());
-                if (b.getType() == replaceType) {
-                    replace.add(b);
-                }
-            }
-            new BukkitRunnable() {
-                @Override
-                public void run() {
-                    replace.forEach(b -> b.setType(Material.AIR));
-                }
-            }.runTaskLater(plugin, replaceTicks);
+        try {
+            Clipboard clipboard = clipboardCache.get(schematic, 0);
+            EditSession editSession = clipboard.paste(weWorld, fromBukkitVector(pos), false, false, null);
+            editSession.flushQueue();
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    public void pasteSchematic(File schematic, Vector pos, org.bukkit.World world) {
+    /**
+     * This method pastes the missile on the paste thread. FAWE writes the blocks
+     * through its own queue, so the server thread doesn't wait for the paste. The
+     * paste is added to the batch of the world, see {@link #addToBatch}. The start
+     * replace task is scheduled after the paste is completed.
+     * The blocks of the pasted clipboard are given to pastedBlocks, if it isn't null.
+     *
+     * @return (CompletableFuture) completes on the paste thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteMissileAsync(File schematic, Vector pos, int rotation, org.bukkit.World world,
+                                                     Material glassBlockReplace, int radius, Material replaceType, JavaPlugin plugin, int replaceTicks,
+                                                     BiConsumer<int[], String> pastedBlocks) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, rotation, pos,
+                clipboard -> {
+                    if (pastedBlocks != null) ClipboardCache.forEachBlock(clipboard, pastedBlocks);
+                    scheduleReplace(schematic, clipboard, rotation, pos, world, radius, replaceType, plugin, replaceTicks);
+                }), true);
+    }
+
+    /**
+     * This method pastes the schematic on the paste thread. The paste is added to
+     * the batch of the world, see {@link #addToBatch}.
+     *
+     * @return (CompletableFuture) completes on the paste thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteSchematicAsync(File schematic, Vector pos, org.bukkit.World world, JavaPlugin plugin) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, 0, pos, null), true);
+    }
+
+    /**
+     * This method pastes the missile on the server thread. The paste is added to
+     * the batch of the world, see {@link #addToBatch}.
+     * The blocks of the pasted clipboard are given to pastedBlocks, if it isn't null.
+     *
+     * @return (CompletableFuture) completes on the server thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteMissileBatched(File schematic, Vector pos, int rotation, org.bukkit.World world,
+                                                       Material glassBlockReplace, int radius, Material replaceType, JavaPlugin plugin, int replaceTicks,
+                                                       BiConsumer<int[], String> pastedBlocks) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, rotation, pos,
+                clipboard -> {
+                    if (pastedBlocks != null) ClipboardCache.forEachBlock(clipboard, pastedBlocks);
+                    scheduleReplace(schematic, clipboard, rotation, pos, world, radius, replaceType, plugin, replaceTicks);
+                }), false);
+    }
+
+    /**
+     * This method pastes the schematic on the server thread. The paste is added to
+     * the batch of the world, see {@link #addToBatch}.
+     *
+     * @return (CompletableFuture) completes on the server thread after the blocks are written
+     */
+    public CompletableFuture<Void> pasteSchematicBatched(File schematic, Vector pos, org.bukkit.World world, JavaPlugin plugin) {
+        return addToBatch(world, plugin, new BatchedPaste(schematic, 0, pos, null), false);
+    }
+
+    /**
+     * This method adds the paste to the batch of the world. All pastes of a world,
+     * which are added until the next {@link #flushBatches()}, are pasted together
+     * with one edit session and one flush. So the lighting and the neighbour
+     * updates are done once per batch instead of once per paste. Async batches are
+     * pasted on the paste thread, the others on the server thread. Batches, which
+     * aren't flushed by the caller, are pasted at the next tick.
+     */
+    private CompletableFuture<Void> addToBatch(org.bukkit.World world, JavaPlugin plugin, BatchedPaste paste, boolean async) {
+        Map<org.bukkit.World, List<BatchedPaste>> pending = async ? batches : syncBatches;
+
+        List<BatchedPaste> batch = pending.get(world);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            pending.put(world, batch);
+            Bukkit.getScheduler().runTask(plugin, () -> startBatch(world, pending.remove(world), async));
+        }
+        batch.add(paste);
+        return paste.future;
+    }
+
+    /**
+     * This method pastes all pending batches now. The sync batches are pasted
+     * before it returns, the async batches are handed to the paste thread. It must
+     * be called on the server thread.
+     */
+    public void flushBatches() {
+        for (org.bukkit.World world : new ArrayList<>(syncBatches.keySet())) {
+            startBatch(world, syncBatches.remove(world), false);
+        }
+        for (org.bukkit.World world : new ArrayList<>(batches.keySet())) {
+            startBatch(world, batches.remove(world), true);
+        }
+    }
+
+    private void startBatch(org.bukkit.World world, List<BatchedPaste> pastes, boolean async) {
+        // The batch was already flushed in this tick.
+        if (pastes == null) return;
+
         World weWorld = new BukkitWorld(world);
+        if (async) {
+            PASTE_EXECUTOR.execute(() -> pasteBatch(weWorld, pastes));
+        } else {
+            pasteBatch(weWorld, pastes);
+        }
+    }
+
+    private void pasteBatch(World weWorld, List<BatchedPaste> batch) {
+        List<BatchedPaste> pasted = new ArrayList<>();
+        try {
+            EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1);
+
+            for (BatchedPaste paste : batch) {
+                try {
+                    Clipboard clipboard = clipboardCache.get(paste.schematic, paste.rotation);
+                    paste.clipboard = clipboard;
+
+                    ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, clipboard.getRegion(), clipboard.getOrigin(), editSession, fromBukkitVector(paste.position));
+                    copy.setSourceMask(new ExistingBlockMask(clipboard));
+                    Operations.complete(copy);
+                    pasted.add(paste);
+                } catch (Exception e) {
+                    paste.future.completeExceptionally(e);
+                }
+            }
 
-        try (Clipboard clipboard = ClipboardFormats.findByFile(schematic).load(schematic)) {
-            EditSession editSession = clipboard.paste(weWorld, fromBukkitVector(pos), false, false, null);
             editSession.flushQueue();
+        } catch (Exception e) {
+            batch.forEach(paste -> paste.future.completeExceptionally(e));
+            return;
+        }
+
+        for (BatchedPaste paste : pasted) {
+            try {
+                if (paste.afterPaste != null) paste.afterPaste.run(paste.clipboard);
+                paste.future.complete(null);
+            } catch (Exception e) {
+                paste.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * This method schedules the task, which replaces the start blocks of the missile
+     * with air. Their positions are taken from the pasted clipboard, so no blocks
+     * have to be searched. The Bukkit scheduler can be used from any thread.
+     */
+    private void scheduleReplace(File schematic, Clipboard clipboard, int rotation, Vector pos, org.bukkit.World world,
+                                 int radius, Material replaceType, JavaPlugin plugin, int replaceTicks) {
+        List<Block> replace = new ArrayList<>();
+        for (int[] offset : clipboardCache.getPositions(schematic, clipboard, rotation, replaceType)) {
+            if (Math.abs(offset[0]) > radius || Math.abs(offset[1]) > radius || Math.abs(offset[2]) > radius) continue;
+
+            replace.add(world.getBlockAt(pos.getBlockX() + offset[0], pos.getBlockY() + offset[1], pos.getBlockZ() + offset[2]));
+        }
+        new BukkitRunnable() {
+            @Override
+            public void run() {
+                replace.forEach(b -> b.setType(Material.AIR));
+            }
+        }.runTaskLater(plugin, replaceTicks);
+    }
+
+    /**
+     * This method parses the schematic and its rotated variants into the cache, so
+     * that the first paste doesn't have to read the file.
+     */
+    public void preloadSchematic(File schematic) {
+        try {
+            clipboardCache.preload(schematic);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
+    /**
+     * This method parses the schematic again and replaces the cached version.
+     */
+    public void reloadSchematic(File schematic) {
+        try {
+            clipboardCache.reload(schematic);
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    public void setSchematicsWatched(boolean watched) {
+        clipboardCache.setWatched(watched);
+    }
+
+    /**
+     * This method removes all cached schematics and closes their clipboards.
+     */
+    public void clearCache() {
+        clipboardCache.clear();
+    }
+
+    /**
+     * This method closes a replaced clipboard. It waits for the server thread, so
+     * that a running synchronous paste is done, and then for the paste thread, so
+     * that the batches, which already got the clipboard, are done.
+     */
+    private void closeLater(Runnable close) {
+        JavaPlugin plugin = JavaPlugin.getProvidingPlugin(getClass());
+        if (!plugin.isEnabled()) {
+            close.run();
+            return;
+        }
+        Bukkit.getScheduler().runTask(plugin, () -> PASTE_EXECUTOR.execute(close));
+    }
+
+    /**
+     * This method caches the compiled schematic instead of parsing the schematic
+     * file. If the compiled blocks can't be used (e.g. unknown block states), the
+     * schematic file is parsed instead.
+     */
+    public void preloadCompiled(File schematic, long modificationTime, String[] palette, Map<Integer, int[]> layouts) {
+        try {
+            clipboardCache.putCompiled(schematic, modificationTime, palette, layouts);
+        } catch (Exception e) {
+            e.printStackTrace();
+            preloadSchematic(schematic);
+        }
+    }
+
+    /**
+     * This method calls the consumer for every block of the rotated schematic,
+     * except air, with its position relative to the origin and its block state.
+     */
+    public void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException {
+        try {
+            clipboardCache.forEachBlock(schematic, rotation, consumer);
+        } catch (WorldEditException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * This method loads the schematic and splits the paste into horizontal layers.
+     * Each returned step pastes the next layers with its own edit session, so that
+     * the caller can run one step per tick. The clipboard is closed by the last step.
+     * The schematic is read on the calling thread, which can be an async thread.
+     */
+    public List<Runnable> prepareSchematicPaste(File schematic, Vector pos, org.bukkit.World world, int layersPerStep) throws IOException {
+        World weWorld = new BukkitWorld(world);
+        ClipboardFormat format = ClipboardFormats.findByFile(schematic);
+        if (format == null) throw new IOException("Unknown schematic format of " + schematic.getName());
+        Clipboard clipboard = format.load(schematic);
+
+        BlockVector3 min = clipboard.getRegion().getMinimumPoint();
+        BlockVector3 max = clipboard.getRegion().getMaximumPoint();
+        BlockVector3 to = fromBukkitVector(pos);
+        int layers = Math.max(1, layersPerStep);
+
+        List<Runnable> steps = new ArrayList<>();
+        for (int y = min.getBlockY(); y <= max.getBlockY(); y += layers) {
+            CuboidRegion region = new CuboidRegion(min.withY(y), max.withY(Math.min(max.getBlockY(), y + layers - 1)));
+            boolean last = y + layers > max.getBlockY();
+
+            steps.add(() -> {
+                try (EditSession editSession = WorldEdit.getInstance().getEditSessionFactory().getEditSession(weWorld, -1)) {
+                    ForwardExtentCopy copy = new ForwardExtentCopy(clipboard, region, clipboard.getOrigin(), editSession, to);
+                    copy.setSourceMask(new ExistingBlockMask(clipboard));
+                    Operations.complete(copy);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    if (last) clipboard.close();
+                }
+            });
+        }
+        return steps;
+    }
+
     private BlockVector3 fromBukkitVector(org.bukkit.util.Vector pos) {
         return BlockVector3.at(pos.getX(), pos.getY(), pos.getZ());
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface AfterPaste {
+
+        void run(Clipboard clipboard) throws Exception;
+    }
+
+    private static class BatchedPaste {
+
+        private final File schematic;
+        private final int rotation;
+        private final Vector position;
+        private final AfterPaste afterPaste;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        // The clipboard, which was pasted. A reload of the schematic doesn't change it.
+        private Clipboard clipboard;
+
+        private BatchedPaste(File schematic, int rotation, Vector position, AfterPaste afterPaste) {
+            this.schematic = schematic;
+            this.rotation = rotation;
+            this.position = position;
+            this.afterPaste = afterPaste;
+        }
+    }
+}
@@ -25,9 +25,19 @@ import de.butzlabben.missilewars.configuration.Messages;
 import de.butzlabben.missilewars.game.Arenas;
 import de.butzlabben.missilewars.game.GameManager;
 import de.butzlabben.missilewars.game.misc.MissileWarsPlaceholder;
+import de.butzlabben.missilewars.game.schematics.SchematicWatcher;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
 import de.butzlabben.missilewars.game.signs.CheckRunnable;
 import de.butzlabben.missilewars.game.signs.SignRepository;
 import de.butzlabben.missilewars.game.stats.StatsFetcher;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
+import de.butzlabben.missilewars.game.world.TemplateCache;
+import de.butzlabben.missilewars.game.world.LegacyVoidChunkGenerator;
+import de.butzlabben.missilewars.game.world.VoidChunkGenerator;
+import de.butzlabben.missilewars.game.world.WorldDeletionService;
+import de.butzlabben.missilewars.game.world.WorldPool;
+import de.butzlabben.missilewars.listener.ArenaChangeListener;
 import de.butzlabben.missilewars.listener.PlayerListener;
 import de.butzlabben.missilewars.listener.SignListener;
 import de.butzlabben.missilewars.player.PlayerData;
@@ -37,11 +47,11 @@ import de.butzlabben.missilewars.util.SetupUtil;
 import de.butzlabben.missilewars.util.stats.PreFetcher;
 import de.butzlabben.missilewars.util.version.VersionUtil;
 import lombok.Getter;
-import org.apache.commons.io.FileUtils;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.entity.Player;
+import org.bukkit.generator.ChunkGenerator;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
@@ -62,6 +72,7 @@ public class MissileWars extends JavaPlugin {
     public PaperCommandManager commandManager;
 
     private boolean foundFAWE;
+    private boolean foundWorldEdit;
 
     @Getter
     private PlayerListener playerListener;
@@ -83,11 +94,11 @@ public class MissileWars extends JavaPlugin {
 
         Logger.BOOT.log("Loading properties...");
 
-        // delete old missile wars temp-worlds from the last server session
-        deleteTempWorlds();
-
         Config.load();
         Messages.load();
+
+        // delete old missile wars temp-worlds from the last server session
+        WorldDeletionService.getInstance().deleteTempWorlds();
         SetupUtil.saveDefaultSchematics(new File(Config.getMissilesFolder()), "missiles.zip");
         SetupUtil.saveDefaultSchematics(new File(Config.getShieldsFolder()), "shields.zip");
 
@@ -98,15 +109,19 @@ public class MissileWars extends JavaPlugin {
         registerEvents();
         registerCommands();
 
+        // Check if FAWE is installed. The paster is chosen with the first paste or schematic preload.
+        foundFAWE = Bukkit.getPluginManager().getPlugin("FastAsyncWorldEdit") != null;
+        foundWorldEdit = foundFAWE || Bukkit.getPluginManager().getPlugin("WorldEdit") != null;
+        if (!foundWorldEdit) Logger.WARN.log("WorldEdit is not installed. Only compiled missiles and shields can be pasted");
+        SchematicCompiler.compileAll();
+
         Arenas.load();
+        SchematicWatcher.getInstance().start();
 
         GameManager.getInstance().loadGamesOnStartup();
 
         new Metrics(this, 3749);
 
-        // Check if FAWE is installed
-        foundFAWE = Bukkit.getPluginManager().getPlugin("FastAsyncWorldEdit") != null;
-
         GameManager.getInstance().getGames().values().forEach(game -> {
             for (Player player : Bukkit.getOnlinePlayers()) {
                 if (!game.isIn(player.getLocation())) continue;
@@ -133,11 +148,30 @@ public class MissileWars extends JavaPlugin {
     @Override
     public void onDisable() {
         GameManager.getInstance().disableAll();
-        deleteTempWorlds();
+        SchematicWatcher.getInstance().stop();
+        PasteProvider.getPaster().clearCache();
+        WorldPool.getInstance().shutdown();
+        TemplateCache.getInstance().clear();
+        ResetWorlds.getInstance().shutdown();
+
+        // The temp worlds are only moved into the trash here. It is deleted with the next server start.
+        WorldDeletionService.getInstance().deleteTempWorlds();
+        WorldDeletionService.getInstance().shutdown();
 
         ConnectionHolder.close();
     }
 
+    /**
+     * This method provides the void generator of the game worlds for other worlds,
+     * e.g. with the generator "MissileWars:void" in the bukkit.yml.
+     */
+    @Override
+    public ChunkGenerator getDefaultWorldGenerator(String worldName, String id) {
+        if ((id == null) || id.isEmpty() || id.equalsIgnoreCase(VoidChunkGenerator.NAME)) return LegacyVoidChunkGenerator.create();
+
+        return null;
+    }
+
     /**
      * This method checks if the PlaceholderAPI is installed. When it is
      * installed, a message is sent to the log.
@@ -158,6 +192,7 @@ public class MissileWars extends JavaPlugin {
 
         Bukkit.getPluginManager().registerEvents(playerListener, this);
         Bukkit.getPluginManager().registerEvents(signListener, this);
+        Bukkit.getPluginManager().registerEvents(new ArenaChangeListener(), this);
     }
 
     /**
@@ -189,20 +224,12 @@ public class MissileWars extends JavaPlugin {
     }
 
     /**
-     * This methode deletes the temp arena worlds of the MW game.
+     * This method checks if WorldEdit or FAWE is installed.
+     *
+     * @return true, if it's installed
      */
-    private void deleteTempWorlds() {
-        File[] dirs = Bukkit.getWorldContainer().listFiles();
-        if (dirs == null) return;
-
-        for (File dir : dirs) {
-            if (dir.getName().startsWith("mw-")) {
-                try {
-                    FileUtils.deleteDirectory(dir);
-                } catch (Exception ignored) {
-                }
-            }
-        }
+    public boolean foundWorldEdit() {
+        return foundWorldEdit;
     }
 
     /**
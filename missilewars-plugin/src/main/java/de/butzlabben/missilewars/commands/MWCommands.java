@@ -30,8 +30,15 @@ import de.butzlabben.missilewars.game.enums.GameState;
 import de.butzlabben.missilewars.game.enums.TeamType;
 import de.butzlabben.missilewars.game.enums.VoteState;
 import de.butzlabben.missilewars.game.schematics.SchematicFacing;
+import de.butzlabben.missilewars.game.schematics.SchematicWatcher;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCost;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCostAnalyzer;
 import de.butzlabben.missilewars.game.schematics.objects.Missile;
 import de.butzlabben.missilewars.game.timer.LobbyTimer;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
+import de.butzlabben.missilewars.game.world.TemplateCache;
+import de.butzlabben.missilewars.game.world.WorldDeletionService;
+import de.butzlabben.missilewars.game.world.WorldPool;
 import de.butzlabben.missilewars.player.MWPlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -268,17 +275,24 @@ public class MWCommands extends BaseCommand {
             return;
         }
 
+        LobbyTimer lobbyTimer = (LobbyTimer) game.getTaskManager().getTimer();
+
         if (!game.isReady()) {
             if (game.getMapVoting().getState() == VoteState.RUNNING) {
                 game.getMapVoting().setVotedArena();
-            } else {
+            } else if (game.getArena() == null) {
+                player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.GAME_CAN_NOT_STARTET));
+                return;
+            }
+
+            if (game.isArenaLoadFailed()) {
                 player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.GAME_CAN_NOT_STARTET));
                 return;
             }
         }
 
-        LobbyTimer lobbyTimer = (LobbyTimer) game.getTaskManager().getTimer();
-        lobbyTimer.executeGameStart();
+        // If the arena world is still loading, the game starts once it is ready.
+        lobbyTimer.forceStart();
     }
 
     @Subcommand("stop")
@@ -395,7 +409,21 @@ public class MWCommands extends BaseCommand {
         for (Game game : GameManager.getInstance().getGames().values()) {
             Logger.NORMAL.log("Printing state for arena " + game.getArena().getName() + ". Number: " + i);
             Logger.NORMAL.log(game.toString());
+            if (game.getChunkPreloader() != null) Logger.NORMAL.log(game.getChunkPreloader().getStatus());
+            Logger.NORMAL.log(game.getPasteScheduler().getStatus());
+            Logger.NORMAL.log(game.getMissileMover().getStatus());
+            Logger.NORMAL.log(game.getActiveMissiles().getStatus());
+            Logger.NORMAL.log(game.getActivityGovernor().getStatus());
+            for (Missile missile : game.getArena().getMissileConfiguration().getSchematics()) {
+                TickCost cost = TickCostAnalyzer.getCost(missile.getSchematic());
+                if (cost != null) Logger.NORMAL.log("Missile " + missile.getSchematicName(true) + ": " + cost);
+            }
         }
+        Logger.NORMAL.log(SchematicWatcher.getInstance().getStatus());
+        WorldPool.getInstance().getStatistics().forEach(Logger.NORMAL::log);
+        TemplateCache.getInstance().getStatistics().forEach(Logger.NORMAL::log);
+        ResetWorlds.getInstance().getStatistics().forEach(Logger.NORMAL::log);
+        WorldDeletionService.getInstance().getStatistics().forEach(Logger.NORMAL::log);
 
         player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.DEBUG_PRINTED_DEBUG_MSG));
     }
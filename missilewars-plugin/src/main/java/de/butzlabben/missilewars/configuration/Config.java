@@ -82,6 +82,22 @@ public class Config {
 
         cfg.addDefault("arenas.folder", "plugins/MissileWars/arenas");
 
+        cfg.addDefault("world_copy.io_threads", 4);
+        cfg.addDefault("world_copy.reflink", true);
+        cfg.addDefault("template_cache.enabled", true);
+        cfg.addDefault("template_cache.max_memory_mb", 256);
+        cfg.addDefault("template_compiler.enabled", true);
+        cfg.addDefault("template_compiler.margin", 32);
+        cfg.addDefault("template_compiler.prune_chunks", false);
+        cfg.addDefault("chunk_preload.enabled", true);
+        cfg.addDefault("chunk_preload.tick_budget_ms", 5);
+        cfg.addDefault("shared_world.max_slots", 8);
+        cfg.addDefault("shared_world.slot_spacing", 1024);
+        cfg.addDefault("shared_world.tick_budget_ms", 10);
+        cfg.addDefault("map_voting.speculative_worlds", 2);
+        cfg.addDefault("world_delete.threads", 1);
+        cfg.addDefault("world_delete.retries", 3);
+
         cfg.addDefault("lobbies.multiple_lobbies", false);
         cfg.addDefault("lobbies.folder", "plugins/MissileWars/lobbies");
         cfg.addDefault("lobbies.default_lobby", "lobby0.yml");
@@ -89,6 +105,33 @@ public class Config {
         cfg.addDefault("missiles.folder", "plugins/MissileWars/missiles");
         cfg.addDefault("shields.folder", "plugins/MissileWars/shields");
 
+        cfg.addDefault("schematic_compiler.enabled", true);
+        cfg.addDefault("schematic_watcher.enabled", true);
+        // "worldedit" or "native". The native engine is always used, if WorldEdit is not installed.
+        cfg.addDefault("paste.engine", "worldedit");
+        cfg.addDefault("paste.native_physics", false);
+        // Only used with FAWE
+        cfg.addDefault("paste.async", true);
+        cfg.addDefault("paste_scheduler.enabled", true);
+        cfg.addDefault("paste_scheduler.blocks_per_tick", 1500);
+        cfg.addDefault("paste_scheduler.micros_per_tick", 5000);
+
+        cfg.addDefault("missile_cost.enabled", true);
+        // Missiles with a higher tick cost are not loaded. 0 = no limit
+        cfg.addDefault("missile_cost.max_cost", 0);
+
+        // A missile is retired, when its blocks didn't change for this time.
+        cfg.addDefault("active_missiles.idle_seconds", 3);
+        cfg.addDefault("active_missiles.max_lifetime_seconds", 60);
+
+        // Piston extensions over the budget of a tick are delayed to the next tick. 0 = no limit
+        cfg.addDefault("activity_governor.max_pistons_per_tick", 0);
+        cfg.addDefault("activity_governor.max_physics_per_tick", 0);
+        // A piston, which was delayed this often, is cancelled. 0 = cancel directly
+        cfg.addDefault("activity_governor.max_delay_ticks", 10);
+        // "oldest" or "most_expensive". The other missiles get the budget first, so these missiles are delayed.
+        cfg.addDefault("activity_governor.throttle_order", "oldest");
+
         cfg.addDefault("replace.material", JUKEBOX.name());
         cfg.addDefault("replace.after_ticks", 2);
         cfg.addDefault("replace.radius", 15);
@@ -275,6 +318,66 @@ public class Config {
         return cfg.getString("arenas.folder");
     }
 
+    public static int getWorldCopyThreads() {
+        return cfg.getInt("world_copy.io_threads");
+    }
+
+    public static boolean isWorldCopyReflink() {
+        return cfg.getBoolean("world_copy.reflink");
+    }
+
+    public static boolean isTemplateCacheEnabled() {
+        return cfg.getBoolean("template_cache.enabled");
+    }
+
+    public static int getTemplateCacheMaxMemory() {
+        return cfg.getInt("template_cache.max_memory_mb");
+    }
+
+    public static boolean isTemplateCompilerEnabled() {
+        return cfg.getBoolean("template_compiler.enabled");
+    }
+
+    public static int getTemplateCompilerMargin() {
+        return cfg.getInt("template_compiler.margin");
+    }
+
+    public static boolean isTemplateCompilerPruneChunks() {
+        return cfg.getBoolean("template_compiler.prune_chunks");
+    }
+
+    public static boolean isChunkPreloadEnabled() {
+        return cfg.getBoolean("chunk_preload.enabled");
+    }
+
+    public static int getChunkPreloadTickBudget() {
+        return cfg.getInt("chunk_preload.tick_budget_ms");
+    }
+
+    public static int getSharedWorldMaxSlots() {
+        return cfg.getInt("shared_world.max_slots");
+    }
+
+    public static int getSharedWorldSlotSpacing() {
+        return cfg.getInt("shared_world.slot_spacing");
+    }
+
+    public static int getSharedWorldTickBudget() {
+        return cfg.getInt("shared_world.tick_budget_ms");
+    }
+
+    public static int getSpeculativeWorlds() {
+        return cfg.getInt("map_voting.speculative_worlds");
+    }
+
+    public static int getWorldDeleteThreads() {
+        return cfg.getInt("world_delete.threads");
+    }
+
+    public static int getWorldDeleteRetries() {
+        return cfg.getInt("world_delete.retries");
+    }
+
     public static boolean isMultipleLobbies() {
         return cfg.getBoolean("lobbies.multiple_lobbies");
     }
@@ -294,6 +397,70 @@ public class Config {
     public static String getShieldsFolder() {
         return cfg.getString("shields.folder");
     }
+
+    public static boolean isSchematicCompilerEnabled() {
+        return cfg.getBoolean("schematic_compiler.enabled");
+    }
+
+    public static boolean isMissileCostEnabled() {
+        return cfg.getBoolean("missile_cost.enabled");
+    }
+
+    public static int getMissileMaxCost() {
+        return cfg.getInt("missile_cost.max_cost");
+    }
+
+    public static boolean isSchematicWatcherEnabled() {
+        return cfg.getBoolean("schematic_watcher.enabled");
+    }
+
+    public static int getActiveMissileIdleSeconds() {
+        return cfg.getInt("active_missiles.idle_seconds");
+    }
+
+    public static int getActiveMissileMaxLifetime() {
+        return cfg.getInt("active_missiles.max_lifetime_seconds");
+    }
+
+    public static int getActivityGovernorMaxPistons() {
+        return cfg.getInt("activity_governor.max_pistons_per_tick");
+    }
+
+    public static int getActivityGovernorMaxPhysics() {
+        return cfg.getInt("activity_governor.max_physics_per_tick");
+    }
+
+    public static int getActivityGovernorMaxDelayTicks() {
+        return cfg.getInt("activity_governor.max_delay_ticks");
+    }
+
+    public static boolean isActivityGovernorExpensiveFirst() {
+        return "most_expensive".equalsIgnoreCase(cfg.getString("activity_governor.throttle_order"));
+    }
+
+    public static boolean isNativePasteEngine() {
+        return "native".equalsIgnoreCase(cfg.getString("paste.engine"));
+    }
+
+    public static boolean isNativePastePhysics() {
+        return cfg.getBoolean("paste.native_physics");
+    }
+
+    public static boolean isAsyncPaste() {
+        return cfg.getBoolean("paste.async");
+    }
+
+    public static boolean isPasteSchedulerEnabled() {
+        return cfg.getBoolean("paste_scheduler.enabled");
+    }
+
+    public static int getPasteSchedulerBlocksPerTick() {
+        return cfg.getInt("paste_scheduler.blocks_per_tick");
+    }
+
+    public static int getPasteSchedulerMicrosPerTick() {
+        return cfg.getInt("paste_scheduler.micros_per_tick");
+    }
     
     /**
      * This method gets the minecraft material type of the block to start missiles.
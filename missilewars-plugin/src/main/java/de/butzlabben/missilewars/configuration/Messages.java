@@ -162,6 +162,8 @@ public class Messages {
         ARENA_REACHED_BORDER("arena.reached_border", "&cYou are not allowed to leave the game-arena."),
         ARENA_LEAVED("arena.leaved", "&cYou overstepped the game-arena border and were teleported back to your team-spawn."),
         ARENA_MISSILE_PLACE_DENY("arena.missile_place_deny", "&cYou are not allowed to place a missile here."),
+        ARENA_MISSILE_LIMIT_QUEUED("arena.missile_limit_queued", "&7Too many missiles are flying. Your missile will be launched soon."),
+        ARENA_MISSILE_LIMIT_REFUNDED("arena.missile_limit_refunded", "&cToo many missiles are flying. Please wait a moment."),
         ARENA_NOT_HIGHER("arena.not_higher", "&cYou can not go higher."),
         ARENA_KICK_INACTIVITY("arena.kick_inactivity", "&cYou were inactive on MissileWars."),
 
@@ -19,6 +19,7 @@
 package de.butzlabben.missilewars.configuration.arena;
 
 import com.google.gson.annotations.SerializedName;
+import de.butzlabben.missilewars.game.enums.WorldMode;
 import de.butzlabben.missilewars.util.geometry.GameArea;
 import de.butzlabben.missilewars.util.serialization.Serializer;
 import lombok.Getter;
@@ -38,11 +39,17 @@ public class Arena implements Cloneable {
     @SerializedName("display_name") private String displayName = "&eDefault map";
     @SerializedName("display_material") private String displayMaterial = "STONE";
     @SerializedName("template_world") private String templateWorld = "default_map";
+    @SerializedName("world_pool_size") private int worldPoolSize = 1;
+    @SerializedName("world_mode") private WorldMode worldMode = WorldMode.COPY;
+    // "void" = empty chunks, "default" = generator of the server or any other "plugin:id" generator
+    @SerializedName("generator") private String generator = "void";
+    @SerializedName("arena_schematic") private ArenaSchematicConfiguration schematic = new ArenaSchematicConfiguration();
     @SerializedName("auto_respawn") private boolean autoRespawn = true;
     @SerializedName("game_spawn") private GameSpawnConfiguration spawn = new GameSpawnConfiguration();
     @SerializedName("game_respawn") private GameRespawnConfiguration respawn = new GameRespawnConfiguration();
     @SerializedName("do_tile_drops") private boolean doTileDrops = false;
     @SerializedName("keep_inventory") private boolean keepInventory = false;
+    @SerializedName("world_profile") private WorldProfileConfiguration worldProfile = new WorldProfileConfiguration();
     @SerializedName("max_move_height") private int maxMoveHeight = 170;
     @SerializedName("death_height") private int deathHeight = 65;
     @SerializedName("game_duration") private int gameDuration = 30;
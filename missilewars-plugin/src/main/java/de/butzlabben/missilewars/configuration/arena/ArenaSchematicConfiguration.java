@@ -0,0 +1,42 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.configuration.arena;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * An arena, which is built by pasting a schematic into an empty world instead
+ * of copying the template world. The file is relative to the arenas folder.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class ArenaSchematicConfiguration {
+
+    private boolean enabled = false;
+    private String file = "arena0.schem";
+    private int x = 0;
+    private int y = 100;
+    private int z = 0;
+    // The schematic is pasted in horizontal layers. Higher values finish in fewer ticks.
+    @SerializedName("layers_per_tick") private int layersPerTick = 4;
+}
@@ -18,17 +18,25 @@
 
 package de.butzlabben.missilewars.configuration.arena;
 
+import com.google.gson.annotations.SerializedName;
 import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.enums.MissileLimitBehavior;
 import de.butzlabben.missilewars.game.schematics.SchematicConfiguration;
 import de.butzlabben.missilewars.game.schematics.SchematicFacing;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCost;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCostAnalyzer;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
 import de.butzlabben.missilewars.game.schematics.objects.Missile;
 import de.butzlabben.missilewars.game.schematics.objects.SchematicObject;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.ToString;
 import org.bukkit.entity.EntityType;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 
 
@@ -44,6 +52,10 @@ public class MissileConfiguration extends SchematicConfiguration {
     private boolean eastFacing = true;
     private boolean southFacing = true;
     private boolean westFacing = true;
+    // 0 = no limit
+    @SerializedName("max_active_per_team") private int maxActivePerTeam = 0;
+    @SerializedName("max_active_per_game") private int maxActivePerGame = 0;
+    @SerializedName("over_limit_behavior") private MissileLimitBehavior overLimitBehavior = MissileLimitBehavior.REFUND;
 
     private List<Missile> schematics = new ArrayList<>() {{
         add(new Missile("Tomahawk.schematic", "&aTomahawk", 3, EntityType.CREEPER, 2, 2));
@@ -105,14 +117,45 @@ public class MissileConfiguration extends SchematicConfiguration {
         for (Missile missile : getSchematics()) {
             File schematic = missile.getSchematic();
 
-            if (schematic.exists()) continue;
+            // Without WorldEdit, only compiled schematics can be used.
+            if (!schematic.exists() && !SchematicCompiler.getCompiledFile(schematic).isFile()) {
+                Logger.WARN.log(missile.getDisplayName() + " §7has no " + getObjectNameSingular() + ". Removing this schematic");
+                toRemove.add(missile);
+                continue;
+            }
 
-            Logger.WARN.log(missile.getDisplayName() + " §7has no " + getObjectNameSingular() + ". Removing this schematic");
-            toRemove.add(missile);
+            PasteProvider.getPaster().preloadSchematic(schematic);
+            if (isTooExpensive(missile)) toRemove.add(missile);
         }
         getSchematics().removeAll(toRemove);
     }
     
+    /**
+     * This method analyzes the tick cost of the missile and checks it against the
+     * configured maximum cost.
+     *
+     * @param missile (Missile) the missile
+     *
+     * @return true, if the missile costs more than allowed
+     */
+    private boolean isTooExpensive(Missile missile) {
+        if (!Config.isMissileCostEnabled()) return false;
+
+        TickCost cost;
+        try {
+            cost = TickCostAnalyzer.analyze(missile.getSchematic());
+        } catch (IOException | RuntimeException exception) {
+            Logger.WARN.log("Could not analyze the tick cost of " + missile.getDisplayName() + "§7: " + exception.getMessage());
+            return false;
+        }
+
+        int maxCost = Config.getMissileMaxCost();
+        if (maxCost <= 0 || cost.getScore() <= maxCost) return false;
+
+        Logger.WARN.log(missile.getDisplayName() + " §7is too expensive (cost " + cost.getScore() + ", max " + maxCost + "). Removing this schematic");
+        return true;
+    }
+
     public List<SchematicFacing> getEnabledFacings() {
         List<SchematicFacing> enabledDirections = new ArrayList<>();
 
@@ -0,0 +1,41 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.configuration.arena;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The movement of a missile. By default, a missile flies as a vanilla flying
+ * machine. If the code-driven movement is enabled, the pasted missile is moved
+ * as a rigid block set by the plugin and its pistons never run.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class MissileMovementConfiguration {
+
+    private boolean enabled = false;
+    @SerializedName("ticks_per_block") private int ticksPerBlock = 4;
+    // The missile stops after this amount of blocks, like a vanilla flying machine at an obstacle.
+    @SerializedName("max_distance") private int maxDistance = 200;
+    @SerializedName("explode_on_impact") private boolean explodeOnImpact = true;
+}
@@ -21,6 +21,8 @@ package de.butzlabben.missilewars.configuration.arena;
 import com.google.gson.annotations.SerializedName;
 import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.game.schematics.SchematicConfiguration;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
 import de.butzlabben.missilewars.game.schematics.objects.SchematicObject;
 import de.butzlabben.missilewars.game.schematics.objects.Shield;
 import lombok.Getter;
@@ -95,7 +97,11 @@ public class ShieldConfiguration extends SchematicConfiguration {
         for (Shield shield : getSchematics()) {
             File schematic = shield.getSchematic();
 
-            if (schematic.exists()) continue;
+            // Without WorldEdit, only compiled schematics can be used.
+            if (schematic.exists() || SchematicCompiler.getCompiledFile(schematic).isFile()) {
+                PasteProvider.getPaster().preloadSchematic(schematic);
+                continue;
+            }
 
             Logger.WARN.log(shield.getDisplayName() + " §7has no " + getObjectNameSingular() + ". Removing this schematic");
             toRemove.add(shield);
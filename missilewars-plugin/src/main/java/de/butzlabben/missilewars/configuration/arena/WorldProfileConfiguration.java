@@ -0,0 +1,45 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.configuration.arena;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * The world settings for the temporary game world of an arena. The defaults
+ * disable everything a short-lived arena world doesn't need.
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class WorldProfileConfiguration {
+
+    private boolean enabled = true;
+    private boolean autosave = false;
+    @SerializedName("keep_spawn_in_memory") private boolean keepSpawnInMemory = false;
+    @SerializedName("mob_spawning") private boolean mobSpawning = false;
+    @SerializedName("random_tick_speed") private int randomTickSpeed = 0;
+    @SerializedName("freeze_time") private boolean freezeTime = true;
+    @SerializedName("freeze_weather") private boolean freezeWeather = true;
+    // Only used on Paper. -1 = sized to the game area
+    @SerializedName("view_distance") private int viewDistance = -1;
+    @SerializedName("simulation_distance") private int simulationDistance = -1;
+}
@@ -22,6 +22,13 @@ import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.MissileWars;
 import de.butzlabben.missilewars.configuration.Config;
 import de.butzlabben.missilewars.configuration.arena.Arena;
+import de.butzlabben.missilewars.configuration.arena.AreaConfiguration;
+import de.butzlabben.missilewars.game.enums.WorldMode;
+import de.butzlabben.missilewars.game.world.ArenaSchematicPaster;
+import de.butzlabben.missilewars.game.world.TemplateArchive;
+import de.butzlabben.missilewars.game.world.TemplateCache;
+import de.butzlabben.missilewars.game.world.TemplateCompiler;
+import de.butzlabben.missilewars.game.world.WorldPool;
 import de.butzlabben.missilewars.util.SetupUtil;
 import de.butzlabben.missilewars.util.serialization.Serializer;
 import lombok.Getter;
@@ -29,7 +36,9 @@ import org.bukkit.Bukkit;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Arenas {
@@ -71,7 +80,14 @@ public class Arenas {
                     Logger.WARN.log("There are several arenas configured with the name \"" + arena.getName() + "\". Arenas must have a unique name");
                     continue;
                 }
-                SetupUtil.checkMap(arena.getTemplateWorld());
+                if (arena.getSchematic().isEnabled()) {
+                    File schematic = ArenaSchematicPaster.getSchematicFile(arena.getSchematic());
+                    if (!schematic.isFile()) {
+                        Logger.WARN.log("The arena schematic \"" + schematic.getPath() + "\" of arena \"" + arena.getName() + "\" does not exist");
+                    }
+                } else {
+                    SetupUtil.checkMap(arena.getTemplateWorld());
+                }
                 arena.updateConfig();
                 ARENAS.put(arena.getName(), arena);
             } catch (IOException exception) {
@@ -79,6 +95,35 @@ public class Arenas {
                 exception.printStackTrace();
             }
         }
+
+        // All arenas of a template share one compiled template, which contains all their areas.
+        Map<String, List<AreaConfiguration>> templateAreas = new HashMap<>();
+        for (Arena arena : ARENAS.values()) {
+            if (arena.getSchematic().isEnabled()) continue;
+            templateAreas.computeIfAbsent(arena.getTemplateWorld(), template -> new ArrayList<>()).add(arena.getAreaConfig());
+        }
+
+        // The pools and the cache copy the compiled templates, so they start after the compilation.
+        List<Arena> arenas = new ArrayList<>(ARENAS.values());
+        TemplateCompiler.compileAll(templateAreas).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                Logger.ERROR.log("Could not compile the template worlds");
+                throwable.printStackTrace();
+            }
+            if (!MissileWars.getInstance().isEnabled()) return;
+
+            Bukkit.getScheduler().runTask(MissileWars.getInstance(), () -> startPools(arenas));
+        });
+    }
+
+    private static void startPools(List<Arena> arenas) {
+        for (Arena arena : arenas) {
+            // Reset worlds stay loaded, so only their first game needs a copy.
+            if (arena.getSchematic().isEnabled()) continue;
+            if (arena.getWorldMode() != WorldMode.COPY) continue;
+            if (TemplateArchive.getArchive(arena.getTemplateWorld()) == null) TemplateCache.getInstance().preload(arena.getTemplateWorld());
+            WorldPool.getInstance().register(arena);
+        }
     }
 
     public static Arena getFromName(String arenaName) {
@@ -23,26 +23,33 @@ import de.butzlabben.missilewars.MissileWars;
 import de.butzlabben.missilewars.configuration.Config;
 import de.butzlabben.missilewars.configuration.Messages;
 import de.butzlabben.missilewars.configuration.arena.Arena;
+import de.butzlabben.missilewars.configuration.arena.AreaConfiguration;
 import de.butzlabben.missilewars.configuration.lobby.Lobby;
 import de.butzlabben.missilewars.event.GameStartEvent;
 import de.butzlabben.missilewars.event.GameStopEvent;
 import de.butzlabben.missilewars.game.enums.GameResult;
 import de.butzlabben.missilewars.game.enums.GameState;
 import de.butzlabben.missilewars.game.enums.MapChooseProcedure;
+import de.butzlabben.missilewars.game.enums.MissileLimitBehavior;
 import de.butzlabben.missilewars.game.enums.TeamType;
 import de.butzlabben.missilewars.game.equipment.EquipmentManager;
 import de.butzlabben.missilewars.game.misc.MotdManager;
 import de.butzlabben.missilewars.game.misc.ScoreboardManager;
 import de.butzlabben.missilewars.game.misc.TeamSpawnProtection;
 import de.butzlabben.missilewars.game.schematics.SchematicFacing;
+import de.butzlabben.missilewars.game.schematics.movement.MissileMover;
 import de.butzlabben.missilewars.game.schematics.objects.Missile;
 import de.butzlabben.missilewars.game.schematics.objects.Shield;
+import de.butzlabben.missilewars.game.schematics.paste.PasteScheduler;
+import de.butzlabben.missilewars.game.schematics.tracking.ActiveMissileTracker;
+import de.butzlabben.missilewars.game.schematics.tracking.ActivityGovernor;
 import de.butzlabben.missilewars.game.signs.MWSign;
 import de.butzlabben.missilewars.game.stats.FightStats;
 import de.butzlabben.missilewars.game.timer.EndTimer;
 import de.butzlabben.missilewars.game.timer.GameTimer;
 import de.butzlabben.missilewars.game.timer.LobbyTimer;
 import de.butzlabben.missilewars.game.timer.TaskManager;
+import de.butzlabben.missilewars.game.world.ChunkPreloader;
 import de.butzlabben.missilewars.listener.game.EndListener;
 import de.butzlabben.missilewars.listener.game.GameBoundListener;
 import de.butzlabben.missilewars.listener.game.GameListener;
@@ -64,6 +71,8 @@ import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.util.Vector;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 /**
@@ -84,10 +93,16 @@ public class Game {
     private GameState state = GameState.LOBBY;
     private TeamManager teamManager;
     private boolean ready = false;
+    private boolean arenaLoadFailed = false;
     private boolean restart = false;
     private GameWorld gameWorld;
     private GameArea gameArea;
     private GameArea innerGameArea;
+    private ChunkPreloader chunkPreloader;
+    private final PasteScheduler pasteScheduler = new PasteScheduler();
+    private final MissileMover missileMover = new MissileMover();
+    private final ActiveMissileTracker activeMissiles = new ActiveMissileTracker(this);
+    private final ActivityGovernor activityGovernor = new ActivityGovernor(this);
     private long timestart;
     private Arena arena;
     private ScoreboardManager scoreboardManager;
@@ -153,22 +168,19 @@ public class Game {
         
         // choose the game arena
         if (lobby.getMapChooseProcedure() == MapChooseProcedure.FIRST) {
-            setArena(lobby.getArenas().get(0));
-            prepareGame();
+            setArenaAndPrepare(lobby.getArenas().get(0));
 
         } else if (lobby.getMapChooseProcedure() == MapChooseProcedure.MAPCYCLE) {
             final int lastMapIndex = cycles.getOrDefault(lobby.getName(), -1);
             List<Arena> arenas = lobby.getArenas();
             int index = lastMapIndex >= arenas.size() - 1 ? 0 : lastMapIndex + 1;
             cycles.put(lobby.getName(), index);
-            setArena(arenas.get(index));
-            prepareGame();
+            setArenaAndPrepare(arenas.get(index));
 
         } else if (lobby.getMapChooseProcedure() == MapChooseProcedure.MAPVOTING) {
             if (mapVoting.onlyOneArenaFound()) {
-                setArena(lobby.getArenas().get(0));
                 Logger.WARN.log("Only one arena was found for the lobby \"" + lobby.getName() + "\". The configured map voting was skipped.");
-                prepareGame();
+                setArenaAndPrepare(lobby.getArenas().get(0));
             } else {
                 mapVoting.startVote();
                 updateGameInfo();
@@ -200,7 +212,28 @@ public class Game {
         FightStats.checkTables();
         Logger.DEBUG.log("Fights: " + fights);
 
+        if (Config.isChunkPreloadEnabled() && (gameArea != null)) {
+            chunkPreloader = new ChunkPreloader(gameArea, arena.getTeam1Spawn(), arena.getTeam2Spawn(), arena.getSpectatorSpawn());
+            chunkPreloader.start();
+        }
+
         ready = true;
+        if (taskManager.getTimer() instanceof LobbyTimer) ((LobbyTimer) taskManager.getTimer()).onGameReady();
+    }
+
+    /**
+     * This method is called when the world of the arena could not be loaded. The
+     * game can't start then, so the lobby timer is informed.
+     */
+    public void onArenaLoadFailed() {
+        // A failed template copy completes the load on the copy thread.
+        if (!Bukkit.isPrimaryThread()) {
+            Bukkit.getScheduler().runTask(MissileWars.getInstance(), this::onArenaLoadFailed);
+            return;
+        }
+
+        arenaLoadFailed = true;
+        if (taskManager.getTimer() instanceof LobbyTimer) ((LobbyTimer) taskManager.getTimer()).onArenaLoadFailed();
     }
 
     private void checkFightRestart() {
@@ -260,7 +293,7 @@ public class Game {
         }
 
         Logger.DEBUG.log("Stopping for players");
-        for (Player player : gameWorld.getWorld().getPlayers()) {
+        for (Player player : getGameWorldPlayers()) {
 
             Logger.DEBUG.log("Stopping for: " + player.getName());
             player.setGameMode(GameMode.SPECTATOR);
@@ -309,6 +342,13 @@ public class Game {
             teleportToFallbackSpawn(mwPlayer.getPlayer());
         }
 
+        mapVoting.discardSpeculativeWorlds();
+        if (chunkPreloader != null) chunkPreloader.release();
+        // The tracker is cleared first, so that cancelled pastes don't launch queued missiles.
+        activeMissiles.clear();
+        pasteScheduler.clear();
+        missileMover.clear();
+        activityGovernor.clear();
         if (gameWorld != null) gameWorld.unload();
     }
     
@@ -320,6 +360,14 @@ public class Game {
         HandlerList.unregisterAll(listener);
         taskManager.stopTimer();
 
+        mapVoting.discardSpeculativeWorlds();
+        if (chunkPreloader != null) chunkPreloader.release();
+        // The tracker is cleared first, so that cancelled pastes don't launch queued missiles.
+        activeMissiles.clear();
+        pasteScheduler.clear();
+        missileMover.clear();
+        activityGovernor.clear();
+
         if (gameWorld != null) {
             gameWorld.unload();
             gameWorld.delete();
@@ -330,6 +378,20 @@ public class Game {
         }
     }
 
+    /**
+     * This method returns all players inside the game world. In shared worlds,
+     * only the players in the slot of this game are returned.
+     *
+     * @return (List) the players
+     */
+    private List<Player> getGameWorldPlayers() {
+        List<Player> worldPlayers = new ArrayList<>();
+        for (Player player : gameWorld.getWorld().getPlayers()) {
+            if (gameWorld.isInWorld(player.getLocation())) worldPlayers.add(player);
+        }
+        return worldPlayers;
+    }
+
     /**
      * This method checks if the location is inside in the Lobby-Area.
      *
@@ -376,7 +438,7 @@ public class Game {
         // Is possible during the map voting phase:
         if (gameArea == null) return false;
 
-        return Geometry.isInWorld(location, gameArea.getWorld());
+        return gameWorld.isInWorld(location);
     }
 
     /**
@@ -462,9 +524,36 @@ public class Game {
             return;
         }
         
+        MWPlayer mwPlayer = getPlayer(player);
+        if (mwPlayer == null) return;
+
+        Team team = mwPlayer.getTeam();
+        SchematicFacing facing = SchematicFacing.getFacingPlayer(player, this.arena.getMissileConfiguration());
+        if (activeMissiles.isOverLimit(team)) {
+            // The spawn egg is only used, if the launch is queued.
+            if (this.arena.getMissileConfiguration().getOverLimitBehavior() == MissileLimitBehavior.REFUND) {
+                activeMissiles.countRefund();
+                player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.ARENA_MISSILE_LIMIT_REFUNDED));
+                return;
+            }
+
+            itemStack.setAmount(itemStack.getAmount() - 1);
+            player.setItemInHand(itemStack);
+
+            Location location = player.getLocation();
+            activeMissiles.queue(team, () -> {
+                MWPlayer queuedPlayer = getPlayer(player);
+                if (queuedPlayer == null || queuedPlayer.getTeam() != team) return;
+
+                missile.paste(this, player, location, facing);
+            });
+            player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.ARENA_MISSILE_LIMIT_QUEUED));
+            return;
+        }
+
         itemStack.setAmount(itemStack.getAmount() - 1);
         player.setItemInHand(itemStack);
-        missile.paste(this, player, SchematicFacing.getFacingPlayer(player, this.arena.getMissileConfiguration()));
+        missile.paste(this, player, facing);
     }
 
     /**
@@ -472,20 +561,22 @@ public class Game {
      *
      * @param player the executing player
      * @param ball the snowball
+     *
+     * @return (CompletableFuture) completes after the shield is pasted
      */
-    public void spawnShield(Player player, Snowball ball) {
+    public CompletableFuture<Void> spawnShield(Player player, Snowball ball) {
         
         ItemMeta itemMeta = ball.getItem().getItemMeta();
-        if (itemMeta == null) return;
+        if (itemMeta == null) return CompletableFuture.completedFuture(null);
 
         Shield shield = (Shield) this.arena.getShieldConfiguration().getSchematicFromDisplayName(itemMeta.getDisplayName());
         if (shield == null) {
             player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.COMMAND_INVALID_SHIELD)
                     .replace("%input%", itemMeta.getDisplayName()));
-            return;
+            return CompletableFuture.completedFuture(null);
         }
         
-        shield.paste(ball);
+        return shield.paste(this, ball);
     }
 
     /**
@@ -506,7 +597,29 @@ public class Game {
         fb.setBounce(false);
     }
 
-    public void setArena(Arena arena) {
+    /**
+     * This method sets the arena of the game and loads a new copy of its world.
+     * The world is loaded asynchronously, so the game area and the spawns are
+     * available after the returned future has been completed.
+     *
+     * @param arena (Arena) the arena configuration
+     *
+     * @return (CompletableFuture) completes on the server thread after the world is loaded
+     */
+    public CompletableFuture<Void> setArena(Arena arena) {
+        return setArena(arena, null);
+    }
+
+    /**
+     * This method sets the arena of the game. A game world that was already
+     * prepared for this arena (e.g. during the map voting) is used, if present.
+     *
+     * @param arena (Arena) the arena configuration
+     * @param preparedWorld (GameWorld) the prepared world of the arena or null
+     *
+     * @return (CompletableFuture) completes on the server thread after the world is loaded
+     */
+    public CompletableFuture<Void> setArena(Arena arena, GameWorld preparedWorld) {
         if (this.arena != null) {
             throw new IllegalStateException("Arena already set");
         }
@@ -514,23 +627,54 @@ public class Game {
         arena.getMissileConfiguration().check();
         arena.getShieldConfiguration().check();
 
-        this.arena = arena.clone();
-        gameWorld = new GameWorld(this, arena.getTemplateWorld());
-        gameWorld.load();
-        gameArea = new GameArea(gameWorld.getWorld(), arena.getAreaConfig());
-
-        try {
-            Serializer.setWorldAtAllLocations(this.arena, gameWorld.getWorld());
-            teamManager.getTeam1().setSpawn(this.arena.getTeam1Spawn());
-            teamManager.getTeam2().setSpawn(this.arena.getTeam2Spawn());
-            teamManager.getTeamSpec().setSpawn(this.arena.getSpectatorSpawn());
-        } catch (Exception exception) {
-            Logger.ERROR.log("Could not inject world object at arena " + this.arena.getName());
-            exception.printStackTrace();
-            return;
+        // A prepared world was built with its own copy of the arena, which is used by the game then.
+        if (preparedWorld != null) {
+            this.arena = preparedWorld.getArena();
+            gameWorld = preparedWorld;
+        } else {
+            this.arena = arena.clone();
+            gameWorld = new GameWorld(this, this.arena);
         }
 
-        createInnerGameArea();
+        return gameWorld.load().thenAccept(world -> {
+            // In shared worlds, the arena is moved to the slot of this game.
+            Vector offset = gameWorld.getOffset();
+            AreaConfiguration area = this.arena.getAreaConfig();
+            gameArea = new GameArea(new Location(world, area.getMinX(), area.getMinY(), area.getMinZ()).add(offset),
+                    new Location(world, area.getMaxX(), area.getMaxY(), area.getMaxZ()).add(offset));
+
+            try {
+                this.arena.getTeam1Spawn().add(offset);
+                this.arena.getTeam2Spawn().add(offset);
+                this.arena.getSpectatorSpawn().add(offset);
+                Serializer.setWorldAtAllLocations(this.arena, world);
+                teamManager.getTeam1().setSpawn(this.arena.getTeam1Spawn());
+                teamManager.getTeam2().setSpawn(this.arena.getTeam2Spawn());
+                teamManager.getTeamSpec().setSpawn(this.arena.getSpectatorSpawn());
+            } catch (Exception exception) {
+                Logger.ERROR.log("Could not inject world object at arena " + this.arena.getName());
+                exception.printStackTrace();
+                return;
+            }
+
+            createInnerGameArea();
+        });
+    }
+
+    /**
+     * This method sets the arena and prepares the game after its world is loaded.
+     *
+     * @param arena (Arena) the arena configuration
+     */
+    private void setArenaAndPrepare(Arena arena) {
+        setArena(arena).thenRun(this::prepareGame).exceptionally(throwable -> {
+            if (throwable.getCause() instanceof CancellationException) return null;
+
+            Logger.ERROR.log("Could not load the arena \"" + arena.getName() + "\" for the lobby \"" + lobby.getName() + "\"");
+            throwable.printStackTrace();
+            onArenaLoadFailed();
+            return null;
+        });
     }
 
     private void createInnerGameArea() {
@@ -583,7 +727,7 @@ public class Game {
      */
     public void sendGameResult() {
 
-        for (Player player : gameWorld.getWorld().getPlayers()) {
+        for (Player player : getGameWorldPlayers()) {
             MWPlayer mwPlayer = getPlayer(player);
             Team team = mwPlayer.getTeam();
             
@@ -19,32 +19,58 @@
 package de.butzlabben.missilewars.game;
 
 import de.butzlabben.missilewars.Logger;
-import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.MissileWars;
 import de.butzlabben.missilewars.configuration.Messages;
+import de.butzlabben.missilewars.configuration.arena.Arena;
+import de.butzlabben.missilewars.configuration.arena.AreaConfiguration;
+import de.butzlabben.missilewars.configuration.arena.WorldProfileConfiguration;
+import de.butzlabben.missilewars.game.enums.WorldMode;
+import de.butzlabben.missilewars.game.world.ArenaSchematicPaster;
+import de.butzlabben.missilewars.game.world.ArenaSlot;
+import de.butzlabben.missilewars.game.world.ArenaSnapshot;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
+import de.butzlabben.missilewars.game.world.TemplateCopier;
+import de.butzlabben.missilewars.game.world.LegacyVoidChunkGenerator;
+import de.butzlabben.missilewars.game.world.VoidChunkGenerator;
+import de.butzlabben.missilewars.game.world.WorldDeletionService;
+import de.butzlabben.missilewars.game.world.WorldPool;
+import de.butzlabben.missilewars.util.geometry.GameArea;
+import de.butzlabben.missilewars.util.version.PaperUtil;
 import java.io.File;
-import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import lombok.Getter;
 import lombok.ToString;
-import org.apache.commons.io.FileUtils;
 import org.bukkit.Bukkit;
 import org.bukkit.GameRule;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.WorldCreator;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
 
 @Getter
-@ToString(exclude = {"game", "lock"})
+@ToString(exclude = {"game", "arena", "lock", "slot", "loading"})
 public class GameWorld {
 
     private final String templateName;
     private final String worldNameTemplate;
     private final Game game;
+    private final Arena arena;
     private final Object lock = new Object();
-    private String worldName;
+    private volatile String worldName;
+    private volatile boolean closed = false;
+    private ArenaSlot slot;
+    private CompletableFuture<World> loading;
 
-    public GameWorld(Game game, String templateName) {
-        this.templateName = templateName;
+    // Bukkit worlds can only be created on the server thread.
+    private static final Executor SYNC_EXECUTOR = task -> Bukkit.getScheduler().runTask(MissileWars.getInstance(), task);
+
+    public GameWorld(Game game, Arena arena) {
+        this.templateName = arena.getTemplateWorld();
+        this.arena = arena;
         this.game = game;
         this.worldNameTemplate = "mw-" + templateName;
     }
@@ -64,7 +90,7 @@ public class GameWorld {
     public void kickInactivity() {
         synchronized (lock) {
             Bukkit.getOnlinePlayers().forEach(p -> {
-                if (p.isDead() && p.getWorld().getName().equals(worldName)) {
+                if (p.isDead() && game.isInGameWorld(p.getLocation())) {
                     p.kickPlayer(Messages.getMessage(true, Messages.MessageEnum.ARENA_KICK_INACTIVITY));
                 }
             });
@@ -73,6 +99,16 @@ public class GameWorld {
 
     public void unload() {
         synchronized (lock) {
+            closed = true;
+            if (worldName == null) return;
+
+            // Reset worlds stay loaded. Only the changed chunks are restored for the next game.
+            if (slot != null) {
+                Logger.DEBUG.log("Restoring reset world");
+                ResetWorlds.getInstance().release(slot);
+                return;
+            }
+
             World w = Bukkit.getWorld(worldName);
             if (w == null)
                 return;
@@ -83,6 +119,8 @@ public class GameWorld {
                     Logger.DEBUG.log("Removing: " + e.getName());
                 }
             }
+            // The world is deleted afterwards, so nothing (chunks, level.dat) is saved.
+            w.setAutoSave(false);
             Bukkit.getWorlds().remove(w);
             Bukkit.unloadWorld(w, false);
         }
@@ -90,45 +128,255 @@ public class GameWorld {
 
     public void delete() {
         synchronized (lock) {
+            closed = true;
+            if (worldName == null) return;
+            if (slot != null) return;
+
             Logger.DEBUG.log("Deleting old world");
-            File file = new File(worldName);
-            FileUtils.deleteQuietly(file);
-            if (file.exists() || file.isDirectory()) {
-                Logger.WARN.log("Could not delete old world!");
-                file.delete();
-            }
+            WorldDeletionService.getInstance().delete(new File(Bukkit.getWorldContainer(), worldName));
+        }
+    }
+
+    /**
+     * This method unloads the world and deletes it, after a running load has
+     * ended. Until then, the template may still be copied into the world folder,
+     * which must not be moved into the trash in the middle of the copy.
+     */
+    public void discard() {
+        unload();
+
+        CompletableFuture<World> pending;
+        synchronized (lock) {
+            pending = loading;
         }
+        if ((pending == null) || pending.isDone()) {
+            delete();
+            return;
+        }
+
+        pending.whenComplete((world, throwable) -> {
+            // The remaining folders of the server session are deleted with the next start.
+            if (!MissileWars.getInstance().isEnabled()) return;
+
+            Bukkit.getScheduler().runTask(MissileWars.getInstance(), () -> {
+                // A world, which was created after the unload, is unloaded as well. A
+                // slot was already released by the unload before.
+                if (slot == null) unload();
+                delete();
+            });
+        });
     }
 
-    public void load() {
+    /**
+     * This method loads a new copy of the template world. A ready copy of the world
+     * pool is used, if available. Otherwise the template is copied asynchronously.
+     * The world itself is created on the server thread afterwards. Arenas with a
+     * schematic are pasted into an empty world over several ticks instead.
+     * <p>
+     * The world is only loaded once. Further calls return the same future, e.g.
+     * when a world prepared during the map voting is used for the game.
+     *
+     * @return (CompletableFuture) completes with the loaded world on the server thread
+     */
+    public CompletableFuture<World> load() {
         synchronized (lock) {
-            int i = 0;
-            File file;
-            do {
-                worldName = worldNameTemplate + "-" + i;
-                file = new File(Bukkit.getWorldContainer(), worldName);
-                i++;
-            } while (file.exists() || file.isDirectory());
-
-            File arenasFolder = new File(Config.getArenasFolder());
-            File newFile = new File(arenasFolder, templateName);
-
-            try {
-                FileUtils.copyDirectory(newFile, file);
-            } catch (IOException e) {
-                e.printStackTrace();
+            if (loading == null) loading = startLoading();
+            return loading;
+        }
+    }
+
+    private CompletableFuture<World> startLoading() {
+        CompletableFuture<Void> copy;
+
+        synchronized (lock) {
+            if (isResetMode()) {
+                slot = ResetWorlds.getInstance().acquire(getSnapshotName(), arena.getWorldMode());
+                if (slot != null) {
+                    World world = slot.getWorld();
+                    Logger.DEBUG.log("Using slot " + slot.getIndex() + " of reset world \"" + world.getName() + "\"");
+                    worldName = world.getName();
+                    applyGameRules(world);
+                    applyWorldProfile(world);
+                    return slot.prepare().thenApply(ignored -> {
+                        if (closed) throw new CancellationException("The game world slot was closed before it was prepared");
+                        return world;
+                    });
+                }
             }
 
-            File uid = new File(file, "uid.dat");
-            if (uid.isFile()) FileUtils.deleteQuietly(uid);
+            if (isSchematicArena()) {
+                // The arena is pasted into an empty world, so no template has to be copied.
+                File file = TemplateCopier.reserveWorldFolder(templateName);
+                worldName = file.getName();
+                copy = CompletableFuture.completedFuture(null);
+            } else {
+                worldName = WorldPool.getInstance().lease(templateName);
+            }
+
+            if (worldName == null) {
+                Logger.DEBUG.log("No prepared copy of \"" + templateName + "\" available. Copying the template");
+                File file = TemplateCopier.reserveWorldFolder(templateName);
+                worldName = file.getName();
+                copy = TemplateCopier.copyAsync(templateName, file);
+            } else {
+                copy = CompletableFuture.completedFuture(null);
+            }
+        }
+
+        CompletableFuture<World> world = copy.thenApplyAsync(ignored -> createWorld(), SYNC_EXECUTOR);
+        if (isSchematicArena()) {
+            world = world.thenCompose(createdWorld -> ArenaSchematicPaster.paste(arena.getSchematic(), createdWorld));
+        }
+        return world.thenApply(this::registerResetSlot);
+    }
+
+    private World createWorld() {
+        synchronized (lock) {
+            // The game was reset while the template was still being copied.
+            if (closed) {
+                WorldDeletionService.getInstance().delete(new File(Bukkit.getWorldContainer(), worldName));
+                throw new CancellationException("The game world \"" + worldName + "\" was closed before it was loaded");
+            }
 
             Logger.DEBUG.log("Loading new gameworld");
-            World world = Bukkit.createWorld(new WorldCreator(worldName));
+            World world = Bukkit.createWorld(getWorldCreator());
             Bukkit.getWorlds().add(world);
+            applyGameRules(world);
+            applyWorldProfile(world);
+            return world;
+        }
+    }
 
-            world.setGameRule(GameRule.DO_TILE_DROPS, game.getArena().isDoTileDrops());
-            world.setGameRule(GameRule.KEEP_INVENTORY, game.getArena().isKeepInventory());
+    /**
+     * This method captures the arena of a new reset world, after the template was
+     * copied or the arena schematic was pasted.
+     */
+    private World registerResetSlot(World world) {
+        synchronized (lock) {
+            if (!isResetMode()) return world;
+            if (closed) throw new CancellationException("The game world \"" + worldName + "\" was closed before it was loaded");
+
+            ArenaSnapshot snapshot = ArenaSnapshot.capture(getSnapshotName(), world, new GameArea(world, arena.getAreaConfig()));
+            slot = ResetWorlds.getInstance().register(snapshot, world, arena.getWorldMode());
+            return world;
+        }
+    }
+
+    /**
+     * This method creates the world creator with the configured generator of the
+     * arena. It is used for all chunks, which are not part of the template.
+     */
+    private WorldCreator getWorldCreator() {
+        WorldCreator creator = new WorldCreator(worldName);
+        String generator = arena.getGenerator();
+
+        if ((generator == null) || generator.equalsIgnoreCase(VoidChunkGenerator.NAME)) {
+            creator.generator(LegacyVoidChunkGenerator.create());
+        } else if (!generator.equalsIgnoreCase("default")) {
+            creator.generator(generator);
+        }
+        return creator;
+    }
+
+    private void applyGameRules(World world) {
+        world.setGameRule(GameRule.DO_TILE_DROPS, arena.isDoTileDrops());
+        world.setGameRule(GameRule.KEEP_INVENTORY, arena.isKeepInventory());
+    }
+
+    /**
+     * This method disables everything the temporary game world doesn't need,
+     * according to the world profile of the arena.
+     */
+    @SuppressWarnings("deprecation")
+    private void applyWorldProfile(World world) {
+        WorldProfileConfiguration profile = arena.getWorldProfile();
+        if (!profile.isEnabled()) return;
+
+        world.setAutoSave(profile.isAutosave());
+        world.setKeepSpawnInMemory(profile.isKeepSpawnInMemory());
+        world.setGameRule(GameRule.RANDOM_TICK_SPEED, profile.getRandomTickSpeed());
+
+        if (!profile.isMobSpawning()) {
+            world.setGameRule(GameRule.DO_MOB_SPAWNING, false);
+            world.setSpawnFlags(false, false);
+            world.setMonsterSpawnLimit(0);
+            world.setAnimalSpawnLimit(0);
+            world.setWaterAnimalSpawnLimit(0);
+            world.setAmbientSpawnLimit(0);
+        }
+
+        if (profile.isFreezeTime()) {
+            world.setGameRule(GameRule.DO_DAYLIGHT_CYCLE, false);
+        }
+
+        if (profile.isFreezeWeather()) {
+            world.setGameRule(GameRule.DO_WEATHER_CYCLE, false);
+            world.setStorm(false);
+            world.setThundering(false);
+        }
+
+        int viewDistance = profile.getViewDistance() < 0 ? getAreaViewDistance() : profile.getViewDistance();
+        int simulationDistance = profile.getSimulationDistance() < 0 ? viewDistance : profile.getSimulationDistance();
+        if (PaperUtil.setViewDistance(world, viewDistance) && PaperUtil.setSimulationDistance(world, simulationDistance)) {
+            Logger.DEBUG.log("Set view distance " + viewDistance + " and simulation distance " + simulationDistance + " for \"" + worldName + "\"");
         }
     }
 
+    /**
+     * This method calculates the view distance, with which a player at one end of
+     * the game area can still see the other end. It is never higher than the view
+     * distance of the server.
+     */
+    private int getAreaViewDistance() {
+        AreaConfiguration area = arena.getAreaConfig();
+        int size = Math.max(Math.abs(area.getMaxX() - area.getMinX()), Math.abs(area.getMaxZ() - area.getMinZ()));
+
+        return Math.max(2, Math.min(Bukkit.getViewDistance(), (size >> 4) + 2));
+    }
+
+    /**
+     * This method returns the name under which the arena of reset worlds is kept.
+     * Arena schematics can share one template world, so they are kept by their file.
+     */
+    private String getSnapshotName() {
+        if (!isSchematicArena()) return templateName;
+
+        return templateName + "/" + arena.getSchematic().getFile();
+    }
+
+    private boolean isSchematicArena() {
+        return arena.getSchematic().isEnabled();
+    }
+
+    private boolean isResetMode() {
+        return arena.getWorldMode() != WorldMode.COPY;
+    }
+
+    /**
+     * This method returns the offset of the arena in this world to its position
+     * in the template. It is only set for the slots of shared worlds.
+     *
+     * @return (Vector) the block offset
+     */
+    public Vector getOffset() {
+        if (slot == null) return new Vector();
+
+        return slot.getOffset();
+    }
+
+    /**
+     * This method checks if the location is in this game world. For shared worlds
+     * only the cell of the slot of this game is part of the game world.
+     *
+     * @param location (Location) the location to be checked
+     *
+     * @return true, if it's in the game world
+     */
+    public boolean isInWorld(Location location) {
+        if (!isWorld(location.getWorld())) return false;
+        if (slot == null) return true;
+
+        return slot.isInCell(location);
+    }
+
 }
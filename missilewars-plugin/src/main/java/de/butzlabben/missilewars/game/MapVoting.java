@@ -18,6 +18,8 @@
 
 package de.butzlabben.missilewars.game;
 
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
 import de.butzlabben.missilewars.configuration.Messages;
 import de.butzlabben.missilewars.configuration.arena.Arena;
 import de.butzlabben.missilewars.game.enums.MapChooseProcedure;
@@ -26,14 +28,20 @@ import de.butzlabben.missilewars.player.MWPlayer;
 import lombok.Getter;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class MapVoting {
 
     private final Map<MWPlayer, Arena> arenaVotes = new HashMap<>();
+    // The worlds of the leading arenas, which are already prepared during the vote.
+    private final Map<Arena, GameWorld> speculativeWorlds = new HashMap<>();
     private Game game;
     @Getter private VoteState state = VoteState.NULL;
 
@@ -89,6 +97,65 @@ public class MapVoting {
         arenaVotes.put(mwPlayer, arena);
 
         player.sendMessage(Messages.getMessage(true, Messages.MessageEnum.VOTE_SUCCESS).replace("%map%", arena.getDisplayName()));
+
+        updateSpeculativeWorlds();
+    }
+
+    /**
+     * This method returns the arenas of the lobby, sorted by their votes. Arenas
+     * with the same number of votes keep the order of the lobby configuration.
+     *
+     * @return (List) the arenas, starting with the most voted one
+     */
+    private List<Arena> getRanking() {
+        Map<Arena, Long> votes = arenaVotes.values().stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        List<Arena> ranking = new ArrayList<>(game.getLobby().getArenas());
+        ranking.sort(Comparator.comparingLong((Arena arena) -> votes.getOrDefault(arena, 0L)).reversed());
+        return ranking;
+    }
+
+    /**
+     * This method starts preparing the worlds of the leading arenas in the
+     * background, so that the world of the winner is already loaded when the vote
+     * ends. Prepared worlds of arenas that fell behind are discarded.
+     */
+    private void updateSpeculativeWorlds() {
+        if (state != VoteState.RUNNING) return;
+
+        List<Arena> ranking = getRanking();
+        List<Arena> leading = ranking.subList(0, Math.min(ranking.size(), Math.max(0, Config.getSpeculativeWorlds())));
+
+        speculativeWorlds.entrySet().removeIf(entry -> {
+            if (leading.contains(entry.getKey())) return false;
+
+            Logger.DEBUG.log("Discarding the prepared world of \"" + entry.getKey().getName() + "\"");
+            entry.getValue().discard();
+            return true;
+        });
+
+        for (Arena arena : leading) {
+            if (speculativeWorlds.containsKey(arena)) continue;
+
+            Logger.DEBUG.log("Preparing the world of \"" + arena.getName() + "\" during the map voting");
+            // The world gets its own copy of the arena, which the game takes over, if the arena wins.
+            GameWorld gameWorld = new GameWorld(game, arena.clone());
+            speculativeWorlds.put(arena, gameWorld);
+            gameWorld.load().exceptionally(throwable -> {
+                if (throwable.getCause() instanceof CancellationException) return null;
+
+                Logger.WARN.log("Could not prepare the world of \"" + arena.getName() + "\": " + throwable.getMessage());
+                return null;
+            });
+        }
+    }
+
+    /**
+     * This method discards all worlds prepared during the vote.
+     */
+    public void discardSpeculativeWorlds() {
+        speculativeWorlds.values().forEach(GameWorld::discard);
+        speculativeWorlds.clear();
     }
 
     /**
@@ -98,16 +165,8 @@ public class MapVoting {
      */
     private Arena getVotedArena() {
 
-        // If no one voted:
-        if (arenaVotes.isEmpty()) return game.getLobby().getArenas().get(0);
-
-        Arena arena = arenaVotes.values().stream().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-                .entrySet()
-                .stream()
-                .max(Map.Entry.comparingByValue()).orElseThrow()
-                .getKey();
-
-        return arena;
+        // If no one voted, this is the first arena of the lobby.
+        return getRanking().get(0);
     }
     
     public double getPercentOf(Arena arena) {
@@ -128,6 +187,7 @@ public class MapVoting {
             throw new IllegalStateException("Defined map choose procedure is not \"MAPVOTING\"");
 
         state = VoteState.RUNNING;
+        updateSpeculativeWorlds();
     }
 
     /**
@@ -164,12 +224,21 @@ public class MapVoting {
 
         Arena arena = game.getMapVoting().getVotedArena();
         if (arena == null) throw new IllegalStateException("Voted arena is not present");
-        game.setArena(arena);
-
         game.broadcast(Messages.getMessage(true, Messages.MessageEnum.VOTE_FINISHED)
-                .replace("%map%", game.getArena().getDisplayName()));
+                .replace("%map%", arena.getDisplayName()));
+
+        GameWorld preparedWorld = speculativeWorlds.remove(arena);
+        discardSpeculativeWorlds();
+
+        // The game is ready as soon as the world of the voted arena is loaded.
+        game.setArena(arena, preparedWorld).thenRun(game::prepareGame).exceptionally(throwable -> {
+            if (throwable.getCause() instanceof CancellationException) return null;
 
-        game.prepareGame();
+            Logger.ERROR.log("Could not load the voted arena \"" + arena.getName() + "\"");
+            throwable.printStackTrace();
+            game.onArenaLoadFailed();
+            return null;
+        });
     }
     
     public boolean isVotedMapOfPlayer(Arena arena, MWPlayer mwPlayer) {
@@ -0,0 +1,33 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.enums;
+
+/**
+ * This enum defines how the world of an arena is provided for each game.
+ * <p>
+ * COPY = a fresh copy of the template world is loaded for every game
+ * RESET = the world stays loaded and only the changed chunks are restored after the game
+ * SHARED = like RESET, but several games run in separate slots of one world
+ */
+public enum WorldMode {
+
+    COPY,
+    RESET,
+    SHARED
+}
@@ -172,6 +172,23 @@ public class MissileWarsPlaceholder extends PlaceholderExpansion {
                 }
             }
             
+            // %missilewars_lobby_activemissiles_<lobby name or 'this'>%
+            if (params.equalsIgnoreCase("lobby_activemissiles_" + lobby.getName())) {
+                return Integer.toString(game.getActiveMissiles().getActiveMissiles());
+            }
+
+            // %missilewars_lobby_activemissiles_team1_<lobby name or 'this'>%
+            if (params.equalsIgnoreCase("lobby_activemissiles_team1_" + lobby.getName())) {
+                if (game.getTeamManager() == null) return noInformation;
+                return Integer.toString(game.getActiveMissiles().getActiveMissiles(game.getTeamManager().getTeam1()));
+            }
+
+            // %missilewars_lobby_activemissiles_team2_<lobby name or 'this'>%
+            if (params.equalsIgnoreCase("lobby_activemissiles_team2_" + lobby.getName())) {
+                if (game.getTeamManager() == null) return noInformation;
+                return Integer.toString(game.getActiveMissiles().getActiveMissiles(game.getTeamManager().getTeam2()));
+            }
+            
             for (Arena arena : lobby.getArenas()) {
 
                 // %missilewars_arena_displayname_<arena name or 'this'>%
@@ -208,6 +225,11 @@ public class MissileWarsPlaceholder extends PlaceholderExpansion {
                 if (params.equalsIgnoreCase("player_team_color")) {
                     return mwPlayer.getTeam().getColor();
                 }
+
+                // %missilewars_player_team_activemissiles%
+                if (params.equalsIgnoreCase("player_team_activemissiles")) {
+                    return Integer.toString(game.getActiveMissiles().getActiveMissiles(mwPlayer.getTeam()));
+                }
                 
             }
             
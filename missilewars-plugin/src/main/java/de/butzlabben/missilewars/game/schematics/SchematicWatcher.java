@@ -0,0 +1,214 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCost;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCostAnalyzer;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import de.butzlabben.missilewars.game.schematics.paste.Paster;
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class watches the missiles and shields folder for new or changed schematics.
+ * A changed schematic is parsed and compiled again on the watcher thread and then
+ * replaces the cached version. Running games use the new version with their next
+ * paste. A paste in progress keeps its version, and the missile tracking and
+ * movement get the blocks of that version from the paster. The replaced clipboards
+ * are closed by the paster, once no paste uses them anymore. As long as the folders
+ * are watched, the pasters don't check the files for changes, so a paste doesn't
+ * access the file system.
+ */
+public class SchematicWatcher {
+
+    // Editors and uploads often write a file in several steps, so the events are collected for a moment.
+    private static final long SETTLE_TIME = 500;
+
+    @Getter
+    private static final SchematicWatcher instance = new SchematicWatcher();
+    private final AtomicLong reloads = new AtomicLong();
+    private volatile WatchService watchService;
+
+    /**
+     * This method starts to watch the schematic folders, if it's enabled in the config.
+     */
+    public synchronized void start() {
+        if (!Config.isSchematicWatcherEnabled() || watchService != null) return;
+
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (String folder : new String[] {Config.getMissilesFolder(), Config.getShieldsFolder()}) {
+                Paths.get(folder).register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException exception) {
+            Logger.WARN.log("Could not watch the schematic folders: " + exception.getMessage());
+            close();
+            return;
+        }
+
+        PasteProvider.getPaster().setSchematicsWatched(true);
+        SchematicCompiler.setWatched(true);
+        TickCostAnalyzer.setWatched(true);
+
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> watch(service), "MissileWars-SchematicWatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This method stops watching the schematic folders. The pasters check the files
+     * for changes again.
+     */
+    public synchronized void stop() {
+        if (watchService == null) return;
+
+        PasteProvider.getPaster().setSchematicsWatched(false);
+        SchematicCompiler.setWatched(false);
+        TickCostAnalyzer.setWatched(false);
+        close();
+    }
+
+    private void close() {
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException ignored) {
+        }
+        watchService = null;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                Set<File> changed = new LinkedHashSet<>();
+                collect(service.take(), changed);
+
+                Thread.sleep(SETTLE_TIME);
+                WatchKey key;
+                while ((key = service.poll()) != null) {
+                    collect(key, changed);
+                }
+
+                changed.forEach(this::reload);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+            // The watcher was stopped.
+        }
+    }
+
+    private void collect(WatchKey key, Set<File> changed) {
+        Path folder = (Path) key.watchable();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Events were lost, so all schematics are reloaded, as the caches don't check the files.
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                Logger.DEBUG.log("Events of the schematic watcher were lost. Reloading all schematics");
+                collectAll(changed);
+                continue;
+            }
+
+            String fileName = event.context().toString();
+            if (!fileName.endsWith(".schem") && !fileName.endsWith(".schematic")) continue;
+
+            changed.add(folder.resolve(fileName).toFile());
+        }
+        key.reset();
+    }
+
+    private void collectAll(Set<File> changed) {
+        for (String folder : new String[] {Config.getMissilesFolder(), Config.getShieldsFolder()}) {
+            File[] schematics = new File(folder).listFiles((dir, name) -> name.endsWith(".schem") || name.endsWith(".schematic"));
+            if (schematics == null) continue;
+
+            changed.addAll(Arrays.asList(schematics));
+        }
+    }
+
+    /**
+     * This method parses the schematic again and swaps it into the caches of the
+     * paster and the compiler. The tick cost of a missile is calculated again.
+     */
+    private void reload(File schematic) {
+        if (!schematic.isFile()) return;
+
+        long start = System.currentTimeMillis();
+        try {
+            Paster paster = PasteProvider.getPaster();
+            paster.reloadSchematic(schematic);
+            SchematicCompiler.reload(schematic);
+            paster.preloadSchematic(schematic);
+
+            if (isMissile(schematic)) checkCost(schematic);
+        } catch (IOException | RuntimeException exception) {
+            Logger.WARN.log("Could not reload the schematic " + schematic.getName() + ": " + exception.getMessage());
+            return;
+        }
+
+        reloads.incrementAndGet();
+        Logger.NORMAL.log("Reloaded the schematic " + schematic.getName() + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private boolean isMissile(File schematic) {
+        return schematic.getAbsoluteFile().getParentFile().equals(new File(Config.getMissilesFolder()).getAbsoluteFile());
+    }
+
+    /**
+     * This method warns about a changed missile, which is more expensive than allowed.
+     * It can't be removed from the running games, so it's only refused with the next
+     * restart.
+     */
+    private void checkCost(File schematic) throws IOException {
+        if (!Config.isMissileCostEnabled()) return;
+
+        TickCost cost = TickCostAnalyzer.analyze(schematic);
+        int maxCost = Config.getMissileMaxCost();
+        if (maxCost <= 0 || cost.getScore() <= maxCost) return;
+
+        Logger.WARN.log("The changed missile " + schematic.getName() + " is too expensive (cost " + cost.getScore() + ", max " + maxCost
+                + "). It will be removed with the next restart");
+    }
+
+    /**
+     * This method returns the state of the watcher for the debug output.
+     *
+     * @return (String) the state
+     */
+    public String getStatus() {
+        return "Schematic watcher: " + (watchService == null ? "inactive" : "active") + " | reloads: " + reloads.get();
+    }
+}
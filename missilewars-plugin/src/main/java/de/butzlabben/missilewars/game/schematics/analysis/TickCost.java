@@ -0,0 +1,50 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.analysis;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * This class contains the result of the tick cost analysis of a schematic.
+ */
+@Getter
+@RequiredArgsConstructor
+public class TickCost {
+
+    private final long sourceModificationTime;
+    private final int blocks;
+    private final int pistons;
+    private final int stickyPistons;
+    private final int observers;
+    private final int slimeBlocks;
+    private final int honeyBlocks;
+    private final int tnt;
+    private final int movedBlocks;
+    private final double blockUpdatesPerTick;
+    private final int score;
+
+    @Override
+    public String toString() {
+        return "cost: " + score + " | ~" + Math.round(blockUpdatesPerTick) + " block updates/tick"
+                + " | blocks: " + blocks + " (moved: " + movedBlocks + ")"
+                + " | pistons: " + pistons + " | sticky pistons: " + stickyPistons + " | observers: " + observers
+                + " | slime: " + slimeBlocks + " | honey: " + honeyBlocks + " | tnt: " + tnt;
+    }
+}
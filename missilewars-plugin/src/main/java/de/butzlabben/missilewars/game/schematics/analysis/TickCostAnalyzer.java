@@ -0,0 +1,202 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.analysis;
+
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class estimates, how expensive a missile is for the server, while it flies.
+ * The blocks of the schematic are counted without pasting it. A flying machine
+ * moves all blocks, which are stuck to its slime and honey blocks, with every step.
+ * Every moved block is removed and placed again and updates its neighbours, so the
+ * moved blocks dominate the block updates per tick.
+ * <p>
+ * The result is only a rough estimate to compare missiles and to refuse extreme
+ * designs. It doesn't simulate the redstone.
+ */
+public class TickCostAnalyzer {
+
+    // A slime flying machine needs about 4 ticks for one step (extension, retraction and the observer pulses).
+    private static final int TICKS_PER_STEP = 4;
+    // The old and the new position of a moved block update their 6 neighbours.
+    private static final int UPDATES_PER_MOVED_BLOCK = 12;
+    private static final int UPDATES_PER_PISTON = 6;
+    private static final int UPDATES_PER_OBSERVER = 4;
+    // TNT doesn't cost anything while flying, but the explosions and the dropped blocks do.
+    private static final int COST_PER_TNT = 2;
+    private static final Set<String> IMMOVABLE = Set.of("obsidian", "crying_obsidian", "bedrock");
+    private static final int[][] NEIGHBOURS = {{1, 0, 0}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}, {0, 0, 1}, {0, 0, -1}};
+
+    private static final Map<File, TickCost> costs = new ConcurrentHashMap<>();
+    // If the schematic folders are watched, the cached costs are used without checking the schematic files.
+    private static volatile boolean watched;
+
+    private TickCostAnalyzer() {
+    }
+
+    /**
+     * This method analyzes the schematic. The result is cached until the schematic
+     * is modified.
+     *
+     * @param schematic (File) the schematic file
+     *
+     * @return (TickCost) the estimated cost
+     *
+     * @throws IOException if the schematic can't be read
+     */
+    public static TickCost analyze(File schematic) throws IOException {
+        // The watcher analyzes changed schematics again, so the file is always checked here.
+        TickCost cost = costs.get(schematic.getAbsoluteFile());
+        if (cost != null && cost.getSourceModificationTime() == schematic.lastModified()) return cost;
+
+        Map<Long, String> blocks = new HashMap<>();
+        SchematicCompiler.forEachBlock(schematic, 0, (position, state) -> blocks.put(pack(position[0], position[1], position[2]), getBlockId(state)));
+
+        cost = calculate(schematic.lastModified(), blocks);
+        costs.put(schematic.getAbsoluteFile(), cost);
+        return cost;
+    }
+
+    /**
+     * This method returns the cached cost of the schematic.
+     *
+     * @param schematic (File) the schematic file
+     *
+     * @return (TickCost) the cost or null, if the current version of the schematic
+     * was not analyzed yet
+     */
+    public static TickCost getCost(File schematic) {
+        TickCost cost = costs.get(schematic.getAbsoluteFile());
+        if (cost == null) return null;
+        if (!watched && cost.getSourceModificationTime() != schematic.lastModified()) return null;
+
+        return cost;
+    }
+
+    /**
+     * This method sets, whether the schematic folders are watched for changes. Then
+     * the cached costs are used without checking the schematic files.
+     *
+     * @param watched (boolean) true, if the schematic folders are watched
+     */
+    public static void setWatched(boolean watched) {
+        TickCostAnalyzer.watched = watched;
+    }
+
+    private static TickCost calculate(long modificationTime, Map<Long, String> blocks) {
+        int pistons = 0, stickyPistons = 0, observers = 0, slimeBlocks = 0, honeyBlocks = 0, tnt = 0;
+        Set<Long> moved = new HashSet<>();
+
+        for (Map.Entry<Long, String> block : blocks.entrySet()) {
+            switch (block.getValue()) {
+                case "piston":
+                    pistons++;
+                    break;
+                case "sticky_piston":
+                    stickyPistons++;
+                    break;
+                case "observer":
+                    observers++;
+                    break;
+                case "slime_block":
+                    slimeBlocks++;
+                    addStuckBlocks(block.getKey(), blocks, moved);
+                    break;
+                case "honey_block":
+                    honeyBlocks++;
+                    addStuckBlocks(block.getKey(), blocks, moved);
+                    break;
+                case "tnt":
+                    tnt++;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        int allPistons = pistons + stickyPistons;
+        // Without slime or honey, every piston only pushes the block in front of it.
+        int movedBlocks = moved.isEmpty() ? allPistons : moved.size();
+
+        double blockUpdatesPerTick = 0;
+        if (allPistons > 0) {
+            int updatesPerStep = movedBlocks * UPDATES_PER_MOVED_BLOCK + allPistons * UPDATES_PER_PISTON + observers * UPDATES_PER_OBSERVER;
+            blockUpdatesPerTick = (double) updatesPerStep / TICKS_PER_STEP;
+        }
+        int score = (int) Math.round(blockUpdatesPerTick) + tnt * COST_PER_TNT;
+
+        return new TickCost(modificationTime, blocks.size(), pistons, stickyPistons, observers, slimeBlocks, honeyBlocks,
+                tnt, movedBlocks, blockUpdatesPerTick, score);
+    }
+
+    /**
+     * This method adds the slime or honey block and all movable blocks next to it.
+     */
+    private static void addStuckBlocks(long position, Map<Long, String> blocks, Set<Long> moved) {
+        moved.add(position);
+
+        int x = unpackX(position), y = unpackY(position), z = unpackZ(position);
+        for (int[] neighbour : NEIGHBOURS) {
+            long neighbourPosition = pack(x + neighbour[0], y + neighbour[1], z + neighbour[2]);
+            String id = blocks.get(neighbourPosition);
+            if (id == null || isImmovable(id)) continue;
+
+            moved.add(neighbourPosition);
+        }
+    }
+
+    // Glazed terracotta can be moved, but doesn't stick to slime or honey.
+    private static boolean isImmovable(String id) {
+        return IMMOVABLE.contains(id) || id.endsWith("_glazed_terracotta");
+    }
+
+    /**
+     * This method returns the block id without the namespace and the block states,
+     * e.g. "sticky_piston" for "minecraft:sticky_piston[extended=false,facing=up]".
+     */
+    private static String getBlockId(String state) {
+        int statesStart = state.indexOf('[');
+        String id = statesStart == -1 ? state : state.substring(0, statesStart);
+        return id.substring(id.indexOf(':') + 1);
+    }
+
+    private static long pack(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private static int unpackX(long position) {
+        return (int) (position << 1 >> 43);
+    }
+
+    private static int unpackY(long position) {
+        return (int) (position << 22 >> 43);
+    }
+
+    private static int unpackZ(long position) {
+        return (int) (position << 43 >> 43);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.compiled;
+
+import lombok.Getter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A schematic in the compiled binary format of MissileWars. It contains a palette
+ * of block states and the non-air blocks for each rotation, so that no NBT has to
+ * be decoded. The file is read via memory-mapped I/O.
+ * <p>
+ * Format: magic, version, modification time of the schematic, palette (length
+ * prefixed UTF-8 block states), then for each rotation the rotation in degrees,
+ * the block count and two ints per block: the packed position relative to the
+ * origin and the palette index.
+ */
+public class CompiledSchematic {
+
+    private static final int MAGIC = 0x4D574353; // "MWCS"
+    private static final int VERSION = 1;
+
+    // 10 bits per axis, so offsets from -512 to 511 blocks are supported.
+    private static final int POSITION_BITS = 10;
+    private static final int POSITION_MASK = (1 << POSITION_BITS) - 1;
+    private static final int POSITION_OFFSET = 1 << (POSITION_BITS - 1);
+
+    @Getter private final long sourceModificationTime;
+    @Getter private final String[] palette;
+    private final Map<Integer, IntBuffer> blocks;
+
+    private CompiledSchematic(long sourceModificationTime, String[] palette, Map<Integer, IntBuffer> blocks) {
+        this.sourceModificationTime = sourceModificationTime;
+        this.palette = palette;
+        this.blocks = blocks;
+    }
+
+    /**
+     * This method maps the compiled file into the memory and reads its palette.
+     * The blocks are read from the mapped file, when they are used.
+     *
+     * @param file (File) the compiled schematic file
+     *
+     * @return (CompiledSchematic) the compiled schematic
+     */
+    public static CompiledSchematic read(File file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) throw new IOException("Unsupported compiled schematic " + file.getName());
+        long sourceModificationTime = buffer.getLong();
+
+        String[] palette = new String[buffer.getInt()];
+        for (int i = 0; i < palette.length; i++) {
+            byte[] state = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(state);
+            palette[i] = new String(state, StandardCharsets.UTF_8);
+        }
+
+        Map<Integer, IntBuffer> blocks = new HashMap<>();
+        int rotations = buffer.getInt();
+        for (int i = 0; i < rotations; i++) {
+            int rotation = buffer.getInt();
+            int length = buffer.getInt() * 2;
+
+            ByteBuffer slice = buffer.slice();
+            slice.limit(length * Integer.BYTES);
+            blocks.put(rotation, slice.asIntBuffer());
+            buffer.position(buffer.position() + length * Integer.BYTES);
+        }
+
+        return new CompiledSchematic(sourceModificationTime, palette, blocks);
+    }
+
+    /**
+     * This method writes a compiled schematic.
+     *
+     * @param file (File) the target file
+     * @param sourceModificationTime (long) the modification time of the schematic
+     * @param palette (List) the block states
+     * @param layouts (Map) the blocks for each rotation, with x, y, z and palette index per block
+     */
+    public static void write(File file, long sourceModificationTime, List<String> palette, Map<Integer, List<int[]>> layouts) throws IOException {
+        int size = 4 * Integer.BYTES + Long.BYTES;
+        byte[][] states = new byte[palette.size()][];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = palette.get(i).getBytes(StandardCharsets.UTF_8);
+            size += Short.BYTES + states[i].length;
+        }
+        for (List<int[]> layout : layouts.values()) {
+            size += 2 * Integer.BYTES + layout.size() * 2 * Integer.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(sourceModificationTime);
+
+        buffer.putInt(states.length);
+        for (byte[] state : states) {
+            buffer.putShort((short) state.length).put(state);
+        }
+
+        buffer.putInt(layouts.size());
+        for (Map.Entry<Integer, List<int[]>> layout : layouts.entrySet()) {
+            buffer.putInt(layout.getKey()).putInt(layout.getValue().size());
+            for (int[] block : layout.getValue()) {
+                buffer.putInt(pack(block[0], block[1], block[2])).putInt(block[3]);
+            }
+        }
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * This method reads the modification time of the schematic, from which the
+     * compiled file was created, without reading the rest of the file.
+     *
+     * @param file (File) the compiled schematic file
+     *
+     * @return (long) the modification time or -1, if the file is not readable
+     */
+    public static long readSourceModificationTime(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(2 * Integer.BYTES + Long.BYTES);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) return -1;
+            }
+            header.flip();
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) return -1;
+            return header.getLong();
+        } catch (IOException exception) {
+            return -1;
+        }
+    }
+
+    /**
+     * This method checks if the position fits into the packed format.
+     */
+    public static boolean isInRange(int x, int y, int z) {
+        return Math.max(Math.max(Math.abs(x), Math.abs(y)), Math.abs(z)) < POSITION_OFFSET;
+    }
+
+    /**
+     * This method returns the amount of blocks of the rotation.
+     *
+     * @param rotation (int) the rotation in degrees
+     *
+     * @return (int) the amount of non-air blocks or -1, if the rotation is not compiled
+     */
+    public int getBlockCount(int rotation) {
+        IntBuffer buffer = blocks.get(Math.floorMod(rotation, 360));
+        if (buffer == null) return -1;
+
+        return buffer.remaining() / 2;
+    }
+
+    /**
+     * This method returns the blocks of all rotations. Each layout contains four
+     * values per block: the x, y and z offset to the origin and the palette index.
+     *
+     * @return (Map) the layout for each rotation
+     */
+    public Map<Integer, int[]> getLayouts() {
+        Map<Integer, int[]> layouts = new HashMap<>();
+        blocks.keySet().forEach(rotation -> layouts.put(rotation, getLayout(rotation)));
+        return layouts;
+    }
+
+    /**
+     * This method returns the blocks of the rotation.
+     *
+     * @param rotation (int) the rotation in degrees
+     *
+     * @return (int[]) the x, y and z offset to the origin and the palette index per block
+     * or null, if the rotation is not compiled
+     */
+    public int[] getLayout(int rotation) {
+        IntBuffer buffer = blocks.get(Math.floorMod(rotation, 360));
+        if (buffer == null) return null;
+
+        IntBuffer view = buffer.duplicate();
+        int[] layout = new int[view.remaining() * 2];
+        for (int i = 0; view.hasRemaining(); i += 4) {
+            int position = view.get();
+            layout[i] = ((position >> (2 * POSITION_BITS)) & POSITION_MASK) - POSITION_OFFSET;
+            layout[i + 1] = ((position >> POSITION_BITS) & POSITION_MASK) - POSITION_OFFSET;
+            layout[i + 2] = (position & POSITION_MASK) - POSITION_OFFSET;
+            layout[i + 3] = view.get();
+        }
+        return layout;
+    }
+
+    private static int pack(int x, int y, int z) {
+        return ((x + POSITION_OFFSET) << (2 * POSITION_BITS)) | ((y + POSITION_OFFSET) << POSITION_BITS) | (z + POSITION_OFFSET);
+    }
+}
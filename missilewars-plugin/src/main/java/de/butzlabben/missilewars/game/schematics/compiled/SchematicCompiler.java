@@ -0,0 +1,232 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.compiled;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import de.butzlabben.missilewars.game.world.TemplateCopier;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * This class compiles the missile and shield schematics into the compiled binary
+ * format. A compiled schematic is stored in the folder ".compiled" next to the
+ * schematic and is only created again, when the schematic was modified.
+ */
+public class SchematicCompiler {
+
+    public static final String COMPILED_FOLDER = ".compiled";
+    public static final String COMPILED_SUFFIX = ".mwc";
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private static final Map<File, CompiledSchematic> compiledSchematics = new ConcurrentHashMap<>();
+    private static final Set<File> compiling = ConcurrentHashMap.newKeySet();
+    // The modification time of schematics, which could not be compiled. They are only compiled again after a change.
+    private static final Map<File, Long> failedSchematics = new ConcurrentHashMap<>();
+    // If the schematic folders are watched, the schematics are not checked for changes on every access.
+    private static volatile boolean watched;
+
+    private SchematicCompiler() {
+    }
+
+    /**
+     * This method compiles all schematics of the missiles and shields folder in
+     * the background.
+     *
+     * @return (CompletableFuture) completes after the last schematic is compiled
+     */
+    public static CompletableFuture<Void> compileAll() {
+        if (!Config.isSchematicCompilerEnabled()) return CompletableFuture.completedFuture(null);
+
+        return CompletableFuture.runAsync(() -> {
+            long start = System.currentTimeMillis();
+            int compiled = 0;
+
+            for (String folder : new String[] {Config.getMissilesFolder(), Config.getShieldsFolder()}) {
+                File[] schematics = new File(folder).listFiles((dir, name) -> name.endsWith(".schem") || name.endsWith(".schematic"));
+                if (schematics == null) continue;
+
+                for (File schematic : schematics) {
+                    if (compile(schematic)) compiled++;
+                }
+            }
+
+            if (compiled > 0) Logger.DEBUG.log("Compiled " + compiled + " schematics in " + (System.currentTimeMillis() - start) + "ms");
+        }, TemplateCopier.getExecutor());
+    }
+
+    /**
+     * This method compiles the schematic in the background, so that the server
+     * thread doesn't parse and write it. A schematic, which is already compiled
+     * at the moment, is not compiled twice.
+     *
+     * @param schematic (File) the schematic file
+     */
+    public static void compileAsync(File schematic) {
+        if (!Config.isSchematicCompilerEnabled()) return;
+        if (!compiling.add(schematic)) return;
+
+        CompletableFuture.runAsync(() -> {
+            long modificationTime = schematic.lastModified();
+            if (failedSchematics.getOrDefault(schematic, -1L) == modificationTime) return;
+
+            compile(schematic);
+            if (load(schematic) == null) failedSchematics.put(schematic, modificationTime);
+        }, TemplateCopier.getExecutor()).whenComplete((result, throwable) -> compiling.remove(schematic));
+    }
+
+    /**
+     * This method compiles the schematic, if there is no compiled file of the
+     * current version of the schematic yet.
+     *
+     * @param schematic (File) the schematic file
+     *
+     * @return true, if the schematic was compiled
+     */
+    public static boolean compile(File schematic) {
+        File target = getCompiledFile(schematic);
+        if (CompiledSchematic.readSourceModificationTime(target) == schematic.lastModified()) return false;
+
+        try {
+            Map<String, Integer> palette = new LinkedHashMap<>();
+            Map<Integer, List<int[]>> layouts = new HashMap<>();
+
+            for (int rotation : ROTATIONS) {
+                List<int[]> layout = new ArrayList<>();
+                PasteProvider.getPaster().forEachBlock(schematic, rotation, (position, state) -> {
+                    if (!CompiledSchematic.isInRange(position[0], position[1], position[2])) {
+                        throw new IllegalArgumentException("The schematic " + schematic.getName() + " is too large to be compiled");
+                    }
+                    int index = palette.computeIfAbsent(state, key -> palette.size());
+                    layout.add(new int[] {position[0], position[1], position[2], index});
+                });
+                layouts.put(rotation, layout);
+            }
+
+            // The file is written completely before it replaces the old one, as running games may map it.
+            target.getParentFile().mkdirs();
+            File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+            CompiledSchematic.write(temp, schematic.lastModified(), new ArrayList<>(palette.keySet()), layouts);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            compiledSchematics.remove(target.getAbsoluteFile());
+            return true;
+        } catch (IOException | RuntimeException exception) {
+            Logger.WARN.log("Could not compile the schematic " + schematic.getName() + ": " + exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * This method returns the compiled version of the schematic.
+     *
+     * @param schematic (File) the schematic file
+     *
+     * @return (CompiledSchematic) the compiled schematic or null, if it's not compiled
+     * or the schematic was modified since. If only the compiled file exists, it's
+     * always used.
+     */
+    public static CompiledSchematic load(File schematic) {
+        if (!Config.isSchematicCompilerEnabled()) return null;
+
+        File file = getCompiledFile(schematic).getAbsoluteFile();
+        CompiledSchematic compiled = compiledSchematics.get(file);
+        if (compiled != null && (watched || isUpToDate(compiled, schematic))) return compiled;
+        if (!file.isFile()) return null;
+
+        try {
+            compiled = CompiledSchematic.read(file);
+        } catch (IOException | RuntimeException exception) {
+            Logger.WARN.log("Could not read the compiled schematic " + file.getName() + ": " + exception.getMessage());
+            return null;
+        }
+        if (!isUpToDate(compiled, schematic)) return null;
+
+        compiledSchematics.put(file, compiled);
+        return compiled;
+    }
+
+    /**
+     * This method compiles the changed schematic and replaces the cached compiled
+     * version. It's called off the server thread.
+     *
+     * @param schematic (File) the schematic file
+     */
+    public static void reload(File schematic) {
+        if (!Config.isSchematicCompilerEnabled()) return;
+
+        compile(schematic);
+        compiledSchematics.remove(getCompiledFile(schematic).getAbsoluteFile());
+        load(schematic);
+    }
+
+    /**
+     * This method sets, whether the schematic folders are watched for changes. Then
+     * the cached compiled schematics are used without checking the schematic files.
+     *
+     * @param watched (boolean) true, if the schematic folders are watched
+     */
+    public static void setWatched(boolean watched) {
+        SchematicCompiler.watched = watched;
+    }
+
+    /**
+     * This method calls the consumer for every block of the rotated schematic,
+     * except air. The blocks are read from the compiled schematic, if there is
+     * one. Otherwise the schematic is read by the paster.
+     *
+     * @param schematic (File) the schematic file
+     * @param rotation (int) the rotation around the y-axis in degrees
+     * @param consumer (BiConsumer) the consumer of the position relative to the origin and the block state
+     */
+    public static void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException {
+        CompiledSchematic compiled = load(schematic);
+        int[] layout = compiled == null ? null : compiled.getLayout(rotation);
+
+        if (layout == null) {
+            PasteProvider.getPaster().forEachBlock(schematic, rotation, consumer);
+            return;
+        }
+
+        String[] palette = compiled.getPalette();
+        for (int i = 0; i < layout.length; i += 4) {
+            consumer.accept(new int[] {layout[i], layout[i + 1], layout[i + 2]}, palette[layout[i + 3]]);
+        }
+    }
+
+    private static boolean isUpToDate(CompiledSchematic compiled, File schematic) {
+        return !schematic.exists() || (compiled.getSourceModificationTime() == schematic.lastModified());
+    }
+
+    public static File getCompiledFile(File schematic) {
+        return new File(new File(schematic.getParentFile(), COMPILED_FOLDER), schematic.getName() + COMPILED_SUFFIX);
+    }
+}
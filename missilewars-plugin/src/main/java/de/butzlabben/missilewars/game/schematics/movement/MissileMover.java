@@ -0,0 +1,152 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.movement;
+
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.schematics.SchematicFacing;
+import de.butzlabben.missilewars.game.schematics.objects.Missile;
+import de.butzlabben.missilewars.game.schematics.tracking.ActiveMissile;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class moves the missiles of a game, which use the code-driven movement.
+ * Such a missile isn't started as a flying machine. Instead, the pasted blocks are
+ * moved as a rigid block set one block every few ticks. Only the blocks, which are
+ * different after the move, are written, and they are written without physics, so
+ * the pistons and observers of the missile never run.
+ */
+public class MissileMover {
+
+    private final List<MovingMissile> missiles = new ArrayList<>();
+    private BukkitTask task;
+
+    private long startedMissiles;
+    private long steps;
+    private long impacts;
+    private long lastTickNanos;
+
+    /**
+     * This method takes the blocks of the pasted missile from the world and starts
+     * to move them. It must be called on the server thread after the paste.
+     *
+     * @param missile (Missile) the missile
+     * @param pastedBlocks (List) the offsets of the pasted blocks to the paste position
+     * @param position (Vector) the paste position
+     * @param facing (SchematicFacing) the flight direction
+     * @param world (World) the world of the paste
+     * @param activeMissile (ActiveMissile) the tracked missile, whose bounding box is moved along
+     */
+    public void start(Missile missile, List<int[]> pastedBlocks, Vector position, SchematicFacing facing, World world, ActiveMissile activeMissile) {
+        int x = position.getBlockX();
+        int y = position.getBlockY();
+        int z = position.getBlockZ();
+        Material startBlock = Config.getStartReplace();
+
+        Map<Long, BlockData> blocks = new HashMap<>();
+        for (int[] offset : pastedBlocks) {
+            Block block = world.getBlockAt(x + offset[0], y + offset[1], z + offset[2]);
+            if (VersionUtil.isAir(block.getType())) continue;
+
+            // The start blocks only start the flying machine, so they are removed.
+            if (block.getType() == startBlock) {
+                block.setType(Material.AIR, false);
+                continue;
+            }
+            blocks.put(MovingMissile.pack(offset[0], offset[1], offset[2]), block.getBlockData());
+        }
+        if (blocks.isEmpty()) return;
+
+        missiles.add(new MovingMissile(world, x, y, z, facing, blocks, missile.getMovement(), activeMissile));
+        startedMissiles++;
+        startTask();
+    }
+
+    /**
+     * This method stops all missiles, e.g. when the game ends. Their blocks stay
+     * where they are.
+     */
+    public void clear() {
+        missiles.clear();
+        stopTask();
+    }
+
+    private void startTask() {
+        if (task != null) return;
+
+        task = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), this::tick, 1, 1);
+    }
+
+    private void stopTask() {
+        if (task == null) return;
+
+        task.cancel();
+        task = null;
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+
+        Iterator<MovingMissile> iterator = missiles.iterator();
+        while (iterator.hasNext()) {
+            MovingMissile missile = iterator.next();
+            if (!missile.isDue()) continue;
+
+            MovingMissile.StepResult result = missile.step();
+            if (result == MovingMissile.StepResult.MOVED) {
+                steps++;
+                ResetWorlds.getInstance().markPaste(missile.getWorld(), missile.getX(), missile.getZ());
+                continue;
+            }
+
+            if (result == MovingMissile.StepResult.IMPACT) {
+                impacts++;
+                missile.impact();
+            }
+            iterator.remove();
+        }
+
+        lastTickNanos = System.nanoTime() - start;
+        if (missiles.isEmpty()) stopTask();
+    }
+
+    /**
+     * This method returns the metrics of the mover for the debug output.
+     *
+     * @return (String) the metrics
+     */
+    public String getStatus() {
+        return "Missile mover: " + missiles.size() + " moving | started: " + startedMissiles + " | steps: " + steps
+                + " | impacts: " + impacts + " | last tick: " + (lastTickNanos / 1000) + "µs";
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.movement;
+
+import de.butzlabben.missilewars.configuration.arena.MissileMovementConfiguration;
+import de.butzlabben.missilewars.game.schematics.SchematicFacing;
+import de.butzlabben.missilewars.game.schematics.tracking.ActiveMissile;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import lombok.Getter;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.TNTPrimed;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A missile, which is moved as a rigid block set. The blocks are stored with their
+ * offset to the current position of the missile.
+ */
+class MovingMissile {
+
+    @Getter private final World world;
+    private final int directionX;
+    private final int directionZ;
+    private final Map<Long, BlockData> blocks;
+    private final int ticksPerBlock;
+    private final int maxDistance;
+    private final boolean explodeOnImpact;
+    private final ActiveMissile activeMissile;
+
+    @Getter private int x;
+    private final int y;
+    @Getter private int z;
+    private int ticks;
+    private int distance;
+
+    MovingMissile(World world, int x, int y, int z, SchematicFacing facing, Map<Long, BlockData> blocks, MissileMovementConfiguration movement,
+                  ActiveMissile activeMissile) {
+        this.world = world;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.blocks = blocks;
+        this.ticksPerBlock = Math.max(1, movement.getTicksPerBlock());
+        this.maxDistance = movement.getMaxDistance();
+        this.explodeOnImpact = movement.isExplodeOnImpact();
+        this.activeMissile = activeMissile;
+
+        switch (facing) {
+            case NORTH:
+                directionX = 0;
+                directionZ = -1;
+                break;
+            case SOUTH:
+                directionX = 0;
+                directionZ = 1;
+                break;
+            case EAST:
+                directionX = 1;
+                directionZ = 0;
+                break;
+            default:
+                directionX = -1;
+                directionZ = 0;
+                break;
+        }
+    }
+
+    /**
+     * This method counts the ticks until the next step.
+     *
+     * @return true, if the missile moves in this tick
+     */
+    boolean isDue() {
+        if (++ticks < ticksPerBlock) return false;
+
+        ticks = 0;
+        return true;
+    }
+
+    /**
+     * This method moves the missile one block forward. Blocks, which were destroyed
+     * or changed in the world, are removed from the missile first. Then only the
+     * blocks, which differ after the move, are written: the leading layer and
+     * changed blocks inside the missile. The trailing layer is replaced with air.
+     *
+     * @return (StepResult) the result of the step
+     */
+    StepResult step() {
+        removeChangedBlocks();
+        if (blocks.isEmpty() || distance >= maxDistance) return StepResult.STOPPED;
+
+        // Only the blocks in front of the missile, which don't belong to it, can collide. Every
+        // block except air counts, also passable ones: the blocks are written without physics,
+        // so e.g. an overwritten nether portal would not be noticed by the game.
+        for (long offset : blocks.keySet()) {
+            int offsetX = unpackX(offset), offsetY = unpackY(offset), offsetZ = unpackZ(offset);
+            if (blocks.containsKey(pack(offsetX + directionX, offsetY, offsetZ + directionZ))) continue;
+
+            int targetX = x + offsetX + directionX;
+            int targetZ = z + offsetZ + directionZ;
+            if (!world.isChunkLoaded(targetX >> 4, targetZ >> 4)) return StepResult.STOPPED;
+            if (!VersionUtil.isAir(world.getBlockAt(targetX, y + offsetY, targetZ).getType())) return StepResult.IMPACT;
+        }
+
+        for (Map.Entry<Long, BlockData> block : blocks.entrySet()) {
+            long offset = block.getKey();
+            int offsetX = unpackX(offset), offsetY = unpackY(offset), offsetZ = unpackZ(offset);
+
+            // The new position was taken by the block in front of it before the move.
+            BlockData previous = blocks.get(pack(offsetX + directionX, offsetY, offsetZ + directionZ));
+            if (block.getValue().equals(previous)) continue;
+
+            world.getBlockAt(x + offsetX + directionX, y + offsetY, z + offsetZ + directionZ).setBlockData(block.getValue(), false);
+        }
+
+        for (long offset : blocks.keySet()) {
+            int offsetX = unpackX(offset), offsetY = unpackY(offset), offsetZ = unpackZ(offset);
+            if (blocks.containsKey(pack(offsetX - directionX, offsetY, offsetZ - directionZ))) continue;
+
+            world.getBlockAt(x + offsetX, y + offsetY, z + offsetZ).setType(Material.AIR, false);
+        }
+
+        x += directionX;
+        z += directionZ;
+        distance++;
+        activeMissile.move(directionX, 0, directionZ);
+        return StepResult.MOVED;
+    }
+
+    /**
+     * This method ignites the TNT of the missile after an impact, like the redstone
+     * of a vanilla missile does, when it stops.
+     */
+    void impact() {
+        if (!explodeOnImpact) return;
+
+        for (Map.Entry<Long, BlockData> block : blocks.entrySet()) {
+            if (block.getValue().getMaterial() != Material.TNT) continue;
+
+            long offset = block.getKey();
+            Block tnt = world.getBlockAt(x + unpackX(offset), y + unpackY(offset), z + unpackZ(offset));
+            tnt.setType(Material.AIR, false);
+            world.spawn(tnt.getLocation().add(0.5, 0, 0.5), TNTPrimed.class);
+        }
+    }
+
+    private void removeChangedBlocks() {
+        Iterator<Map.Entry<Long, BlockData>> iterator = blocks.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, BlockData> block = iterator.next();
+            long offset = block.getKey();
+
+            Material type = world.getBlockAt(x + unpackX(offset), y + unpackY(offset), z + unpackZ(offset)).getType();
+            if (type != block.getValue().getMaterial()) iterator.remove();
+        }
+    }
+
+    static long pack(int x, int y, int z) {
+        return ((long) (x & 0x1FFFFF) << 42) | ((long) (y & 0x1FFFFF) << 21) | (z & 0x1FFFFF);
+    }
+
+    private static int unpackX(long position) {
+        return (int) (position << 1 >> 43);
+    }
+
+    private static int unpackY(long position) {
+        return (int) (position << 22 >> 43);
+    }
+
+    private static int unpackZ(long position) {
+        return (int) (position << 43 >> 43);
+    }
+
+    enum StepResult {
+        MOVED,
+        IMPACT,
+        STOPPED
+    }
+}
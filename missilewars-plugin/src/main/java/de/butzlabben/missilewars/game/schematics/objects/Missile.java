@@ -18,11 +18,16 @@
 
 package de.butzlabben.missilewars.game.schematics.objects;
 
+import com.google.gson.annotations.SerializedName;
 import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.configuration.arena.MissileMovementConfiguration;
 import de.butzlabben.missilewars.game.Game;
+import de.butzlabben.missilewars.game.Team;
 import de.butzlabben.missilewars.game.schematics.SchematicFacing;
 import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import de.butzlabben.missilewars.game.schematics.tracking.ActiveMissile;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.EntityType;
@@ -32,6 +37,9 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.util.Vector;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 
 /**
  * @author Butzlabben
@@ -42,6 +50,8 @@ public class Missile extends SchematicObject {
     private final EntityType egg;
     private final int down;
     private final int dist;
+    // Missing in older arena configurations
+    @SerializedName("movement") private MissileMovementConfiguration movement;
     
     
     public Missile(String schematic, String displayName, int occurrence, EntityType egg, int down, int dist) {
@@ -55,12 +65,24 @@ public class Missile extends SchematicObject {
     public File getSchematicFolder() {
         return new File(Config.getMissilesFolder());
     }
+
+    public MissileMovementConfiguration getMovement() {
+        if (movement == null) movement = new MissileMovementConfiguration();
+        return movement;
+    }
     
     public void paste(Game game, Player p, SchematicFacing mf) {
+        paste(game, p, p.getLocation(), mf);
+    }
+
+    /**
+     * This method pastes the missile in front of the given location, e.g. the
+     * location of the player at the time of a queued launch.
+     */
+    public void paste(Game game, Player p, Location loc, SchematicFacing mf) {
         if (mf == null)
             return;
         try {
-            Location loc = p.getLocation();
             Vector pastePos = new Vector(loc.getX(), loc.getY(), loc.getZ());
             
             pastePos = pastePos.add(new Vector(0, -down, 0));
@@ -79,8 +101,33 @@ public class Missile extends SchematicObject {
                 rotation = 90;
             }
 
-            PasteProvider.getPaster().pasteMissile(getSchematic(), pastePos, rotation, loc.getWorld(),
-                    game.getPlayer(p).getTeam());
+            // The position is taken now, as the paste may be delayed by the paste scheduler.
+            File schematic = getSchematic();
+            Vector position = pastePos;
+            int pasteRotation = rotation;
+            Team team = game.getPlayer(p).getTeam();
+            // Missiles moved by the plugin must not be started as flying machines.
+            boolean moved = getMovement().isEnabled();
+            ActiveMissile activeMissile = game.getActiveMissiles().register(team);
+            // The block positions of the pasted version, as the schematic may be reloaded until the paste is done.
+            List<int[]> pastedBlocks = new ArrayList<>();
+
+            game.getPasteScheduler()
+                    .submit(schematic, rotation, () -> PasteProvider.getPaster().pasteMissileAsync(schematic, position, pasteRotation, loc.getWorld(), team, !moved,
+                            (offset, state) -> pastedBlocks.add(offset)))
+                    .whenComplete((ignored, throwable) -> {
+                        ResetWorlds.getInstance().markPaste(loc.getWorld(), position.getBlockX(), position.getBlockZ());
+                        if (throwable == null) {
+                            game.getActiveMissiles().onPasted(activeMissile, schematic, pastedBlocks, position);
+                            if (moved) game.getMissileMover().start(this, pastedBlocks, position, mf, loc.getWorld(), activeMissile);
+                            return;
+                        }
+                        game.getActiveMissiles().retire(activeMissile);
+                        if (throwable instanceof CancellationException) return;
+
+                        Logger.ERROR.log("Could not paste " + getDisplayName());
+                        throwable.printStackTrace();
+                    });
         } catch (Exception e) {
             Logger.ERROR.log("Could not load " + getDisplayName());
             e.printStackTrace();
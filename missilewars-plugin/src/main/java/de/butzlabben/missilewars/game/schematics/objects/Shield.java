@@ -2,7 +2,9 @@ package de.butzlabben.missilewars.game.schematics.objects;
 
 import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.Game;
 import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.Snowball;
@@ -11,6 +13,8 @@ import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.util.Vector;
 
 import java.io.File;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 public class Shield extends SchematicObject {
 
@@ -24,16 +28,27 @@ public class Shield extends SchematicObject {
         return new File(Config.getShieldsFolder());
     }
 
-    public void paste(Snowball ball) {
-        try {
-            Location loc = ball.getLocation();
-            Vector pastePos = new Vector(loc.getX(), loc.getY(), loc.getZ());
-            
-            PasteProvider.getPaster().pasteSchematic(getSchematic(), pastePos, loc.getWorld());
-        } catch (Exception e) {
+    /**
+     * This method pastes the shield at the position of the snowball.
+     *
+     * @return (CompletableFuture) completes on the server thread after the paste
+     */
+    public CompletableFuture<Void> paste(Game game, Snowball ball) {
+        Location loc = ball.getLocation();
+        Vector pastePos = new Vector(loc.getX(), loc.getY(), loc.getZ());
+        File schematic = getSchematic();
+
+        CompletableFuture<Void> paste = game.getPasteScheduler()
+                .submit(schematic, 0, () -> PasteProvider.getPaster().pasteSchematicAsync(schematic, pastePos, loc.getWorld()));
+
+        paste.whenComplete((ignored, throwable) -> {
+            ResetWorlds.getInstance().markPaste(loc.getWorld(), pastePos.getBlockX(), pastePos.getBlockZ());
+            if (throwable == null || throwable instanceof CancellationException) return;
+
             Logger.ERROR.log("Could not load " + getDisplayName());
-            e.printStackTrace();
-        }
+            throwable.printStackTrace();
+        });
+        return paste;
     }
 
     /**
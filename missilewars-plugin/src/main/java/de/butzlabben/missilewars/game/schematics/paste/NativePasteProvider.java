@@ -0,0 +1,277 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.paste;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.Team;
+import de.butzlabben.missilewars.game.schematics.compiled.CompiledSchematic;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
+import de.butzlabben.missilewars.util.version.ColorConverter;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.util.Vector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * This paster writes compiled schematics directly through the Bukkit API, without
+ * the edit sessions of WorldEdit. The blocks are grouped by chunk and the block
+ * data of the palette is created only once per schematic and team color.
+ * <p>
+ * Schematic files can only be compiled with WorldEdit. Without WorldEdit, only
+ * schematics with a compiled file can be pasted.
+ */
+public class NativePasteProvider implements Paster {
+
+    private final Paster worldEditPaster;
+    private final Map<File, NativeSchematic> schematics = new ConcurrentHashMap<>();
+
+    /**
+     * @param worldEditPaster (Paster) the WorldEdit paster to compile schematics and
+     *                        paste arena schematics or null, if WorldEdit is not installed
+     */
+    public NativePasteProvider(Paster worldEditPaster) {
+        this.worldEditPaster = worldEditPaster;
+    }
+
+    @Override
+    public void pasteSchematic(File schematic, Vector position, World world) {
+        NativeSchematic nativeSchematic = getSchematic(schematic);
+        if (nativeSchematic == null) {
+            if (worldEditPaster != null) worldEditPaster.pasteSchematic(schematic, position, world);
+            return;
+        }
+
+        paste(nativeSchematic.getLayout(0), nativeSchematic.palette, position, world);
+    }
+
+    @Override
+    public void pasteMissile(File schematic, Vector position, int rotation, World world, Team team, boolean replaceStartBlocks) {
+        NativeSchematic nativeSchematic = getSchematic(schematic);
+        if (nativeSchematic == null) {
+            if (worldEditPaster != null) worldEditPaster.pasteMissile(schematic, position, rotation, world, team, replaceStartBlocks);
+            return;
+        }
+
+        pasteMissile(nativeSchematic, position, rotation, world, team, replaceStartBlocks);
+    }
+
+    @Override
+    public CompletableFuture<Void> pasteMissileAsync(File schematic, Vector position, int rotation, World world, Team team, boolean replaceStartBlocks,
+                                                     BiConsumer<int[], String> pastedBlocks) {
+        NativeSchematic nativeSchematic = getSchematic(schematic);
+        if (nativeSchematic == null) {
+            if (worldEditPaster != null) return worldEditPaster.pasteMissileAsync(schematic, position, rotation, world, team, replaceStartBlocks, pastedBlocks);
+            // Nothing was pasted, so the missile must not count as launched.
+            return CompletableFuture.failedFuture(new IOException("There is no compiled version of the schematic " + schematic.getName()));
+        }
+
+        pasteMissile(nativeSchematic, position, rotation, world, team, replaceStartBlocks);
+        if (pastedBlocks == null) return CompletableFuture.completedFuture(null);
+
+        // The blocks are taken from the same compiled version, which was just pasted.
+        int[] layout = nativeSchematic.getLayout(rotation);
+        String[] states = nativeSchematic.compiled.getPalette();
+        for (int i = 0; i < layout.length; i += 4) {
+            pastedBlocks.accept(new int[] {layout[i], layout[i + 1], layout[i + 2]}, states[layout[i + 3]]);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void pasteMissile(NativeSchematic nativeSchematic, Vector position, int rotation, World world, Team team, boolean replaceStartBlocks) {
+        int[] layout = nativeSchematic.getLayout(rotation);
+        Material glass = ColorConverter.getGlassFromColorCode(team.getColorCode());
+        paste(layout, nativeSchematic.getTeamPalette(glass), position, world);
+        if (!replaceStartBlocks) return;
+
+        // The positions of the replaced blocks are already known from the layout.
+        Material replaceType = Config.getStartReplace();
+        int radius = Config.getReplaceRadius();
+        List<Block> replace = new ArrayList<>();
+        for (int i = 0; i < layout.length; i += 4) {
+            if (nativeSchematic.palette[layout[i + 3]].getMaterial() != replaceType) continue;
+            if (Math.abs(layout[i]) > radius || Math.abs(layout[i + 1]) > radius || Math.abs(layout[i + 2]) > radius) continue;
+
+            replace.add(world.getBlockAt(position.getBlockX() + layout[i], position.getBlockY() + layout[i + 1], position.getBlockZ() + layout[i + 2]));
+        }
+        if (replace.isEmpty()) return;
+
+        Bukkit.getScheduler().runTaskLater(MissileWars.getInstance(), () -> replace.forEach(b -> b.setType(Material.AIR)), Config.getReplaceTicks());
+    }
+
+    @Override
+    public void preloadSchematic(File schematic) {
+        getSchematic(schematic);
+    }
+
+    @Override
+    public void reloadSchematic(File schematic) {
+        if (worldEditPaster != null) worldEditPaster.reloadSchematic(schematic);
+    }
+
+    @Override
+    public void flushPastes() {
+        // Only the fallback to WorldEdit is batched.
+        if (worldEditPaster != null) worldEditPaster.flushPastes();
+    }
+
+    @Override
+    public void setSchematicsWatched(boolean watched) {
+        if (worldEditPaster != null) worldEditPaster.setSchematicsWatched(watched);
+    }
+
+    @Override
+    public void clearCache() {
+        if (worldEditPaster != null) worldEditPaster.clearCache();
+    }
+
+    @Override
+    public void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException {
+        if (worldEditPaster == null) throw new IOException("WorldEdit is needed to read the schematic " + schematic.getName());
+
+        worldEditPaster.forEachBlock(schematic, rotation, consumer);
+    }
+
+    @Override
+    public List<Runnable> prepareSchematicPaste(File schematic, Vector position, World world, int layersPerStep) throws IOException {
+        if (worldEditPaster == null) throw new IOException("WorldEdit is needed to paste the arena schematic " + schematic.getName());
+
+        return worldEditPaster.prepareSchematicPaste(schematic, position, world, layersPerStep);
+    }
+
+    /**
+     * This method sets the blocks chunk by chunk, so that each chunk is only looked
+     * up once.
+     */
+    private void paste(int[] layout, BlockData[] palette, Vector position, World world) {
+        int baseX = position.getBlockX();
+        int baseY = position.getBlockY();
+        int baseZ = position.getBlockZ();
+        int minY = VersionUtil.getVersion() >= 17 ? world.getMinHeight() : 0;
+        int maxY = world.getMaxHeight();
+        boolean physics = Config.isNativePastePhysics();
+
+        Map<Long, List<Integer>> chunks = new HashMap<>();
+        for (int i = 0; i < layout.length; i += 4) {
+            int y = baseY + layout[i + 1];
+            if (y < minY || y >= maxY) continue;
+
+            long chunkKey = ((long) ((baseX + layout[i]) >> 4) << 32) | (((baseZ + layout[i + 2]) >> 4) & 0xFFFFFFFFL);
+            chunks.computeIfAbsent(chunkKey, key -> new ArrayList<>()).add(i);
+        }
+
+        chunks.forEach((chunkKey, blocks) -> {
+            Chunk chunk = world.getChunkAt((int) (chunkKey >> 32), (int) (long) chunkKey);
+            for (int i : blocks) {
+                chunk.getBlock((baseX + layout[i]) & 15, baseY + layout[i + 1], (baseZ + layout[i + 2]) & 15)
+                        .setBlockData(palette[layout[i + 3]], physics);
+            }
+        });
+    }
+
+    /**
+     * This method returns the compiled schematic with its block data. If the
+     * schematic isn't compiled yet, it's compiled in the background, if WorldEdit
+     * is installed. Until then, null is returned and WorldEdit pastes it.
+     */
+    private NativeSchematic getSchematic(File schematic) {
+        File key = schematic.getAbsoluteFile();
+        CompiledSchematic compiled = SchematicCompiler.load(key);
+        if (compiled == null) {
+            if (worldEditPaster != null) {
+                SchematicCompiler.compileAsync(key);
+            } else {
+                Logger.WARN.log("There is no compiled version of the schematic " + schematic.getName());
+            }
+            return null;
+        }
+
+        NativeSchematic nativeSchematic = schematics.get(key);
+        if (nativeSchematic != null && nativeSchematic.compiled == compiled) return nativeSchematic;
+
+        try {
+            nativeSchematic = new NativeSchematic(compiled);
+        } catch (IllegalArgumentException exception) {
+            Logger.WARN.log("The compiled schematic " + schematic.getName() + " contains unknown blocks: " + exception.getMessage());
+            return null;
+        }
+        schematics.put(key, nativeSchematic);
+        return nativeSchematic;
+    }
+
+    private static class NativeSchematic {
+
+        private final CompiledSchematic compiled;
+        private final BlockData[] palette;
+        private final Map<Integer, int[]> layouts = new ConcurrentHashMap<>();
+        private final Map<Material, BlockData[]> teamPalettes = new ConcurrentHashMap<>();
+
+        private NativeSchematic(CompiledSchematic compiled) {
+            this.compiled = compiled;
+
+            String[] states = compiled.getPalette();
+            palette = new BlockData[states.length];
+            for (int i = 0; i < states.length; i++) {
+                palette[i] = Bukkit.createBlockData(states[i]);
+            }
+        }
+
+        private int[] getLayout(int rotation) {
+            return layouts.computeIfAbsent(Math.floorMod(rotation, 360), key -> {
+                int[] layout = compiled.getLayout(key);
+                return layout == null ? new int[0] : layout;
+            });
+        }
+
+        /**
+         * This method returns the palette, in which all stained glass (panes) have
+         * the color of the team. The other block states, like the connections of
+         * panes, are kept.
+         */
+        private BlockData[] getTeamPalette(Material glass) {
+            return teamPalettes.computeIfAbsent(glass, key -> {
+                String color = "minecraft:" + key.name().toLowerCase();
+                BlockData[] teamPalette = palette.clone();
+
+                for (int i = 0; i < teamPalette.length; i++) {
+                    String state = teamPalette[i].getAsString();
+                    if (!state.contains("stained_glass")) continue;
+
+                    teamPalette[i] = Bukkit.createBlockData(state.replaceFirst("minecraft:[a-z_]*stained_glass", color));
+                }
+                return teamPalette;
+            });
+        }
+    }
+}
@@ -18,10 +18,13 @@
 
 package de.butzlabben.missilewars.game.schematics.paste;
 
-
 import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
 import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.Bukkit;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Butzlabben
@@ -32,18 +35,27 @@ public class PasteProvider {
     private static final Paster paster;
 
     static {
+        Paster worldEditPaster = null;
+
         if (MissileWars.getInstance().foundFAWE()) {
             if (VersionUtil.getVersion() < 16) {
-                paster = new R1_13FawePasteProvider();
+                worldEditPaster = new R1_13FawePasteProvider();
                 Logger.DEBUG.log("Chose 1.13 FAWE paster");
             } else {
-                paster = new R1_16FawePasteProvider();
+                worldEditPaster = new R1_16FawePasteProvider();
                 Logger.DEBUG.log("Chose 1.16 FAWE paster");
             }
-        } else {
-            paster = new R1_13WEPasteProvider();
+        } else if (MissileWars.getInstance().foundWorldEdit()) {
+            worldEditPaster = new R1_13WEPasteProvider();
             Logger.DEBUG.log("Chose 1.13 WE paster");
         }
+
+        if (Config.isNativePasteEngine() || (worldEditPaster == null)) {
+            paster = new NativePasteProvider(worldEditPaster);
+            Logger.DEBUG.log("Chose native paster");
+        } else {
+            paster = worldEditPaster;
+        }
     }
 
     private PasteProvider() {
@@ -52,4 +64,24 @@ public class PasteProvider {
     public static Paster getPaster() {
         return paster;
     }
+
+    /**
+     * This method returns a future, which completes on the server thread after the
+     * given future is completed.
+     *
+     * @param future (CompletableFuture) the future of an asynchronous paste
+     *
+     * @return (CompletableFuture) the future on the server thread
+     */
+    static CompletableFuture<Void> onServerThread(CompletableFuture<Void> future) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        future.whenComplete((ignored, throwable) -> Bukkit.getScheduler().runTask(MissileWars.getInstance(), () -> {
+            if (throwable != null) {
+                result.completeExceptionally(throwable);
+            } else {
+                result.complete(null);
+            }
+        }));
+        return result;
+    }
 }
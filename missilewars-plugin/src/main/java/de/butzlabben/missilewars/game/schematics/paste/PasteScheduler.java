@@ -0,0 +1,233 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.paste;
+
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.schematics.compiled.CompiledSchematic;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * This class limits the paste work of a game per tick. Pastes are queued and run
+ * in the order of their submission, as long as the block and time budget of the
+ * current tick is not used up. A paste, which fits into the remaining budget and
+ * has no queued pastes before it, runs immediately.
+ * <p>
+ * A single paste is never split over several ticks, as a partially pasted flying
+ * machine could already start moving. A paste, which is larger than the whole
+ * budget, runs alone in its tick. Asynchronous pastes only count their work on the
+ * server thread.
+ */
+public class PasteScheduler {
+
+    // The cost of schematics without a compiled version, which have an unknown block count.
+    private static final int DEFAULT_COST = 256;
+
+    private final Deque<PasteJob> queue = new ArrayDeque<>();
+    private BukkitTask task;
+
+    private int tickBlocks;
+    private long tickNanos;
+
+    private long pastes;
+    private long immediatePastes;
+    private long totalWaitTime;
+    private long maxWaitTime;
+    private long busyTicks;
+    private long totalTickBlocks;
+    private int lastTickBlocks;
+    private long lastTickNanos;
+    private int maxQueueSize;
+
+    /**
+     * This method runs the paste now or queues it until a later tick. It must be
+     * called on the server thread.
+     *
+     * @param schematic (File) the schematic file, which is used to estimate the cost
+     * @param rotation (int) the rotation of the schematic in degrees
+     * @param paste (Supplier) starts the paste and returns its future
+     *
+     * @return (CompletableFuture) completes after the paste is completed
+     */
+    public CompletableFuture<Void> submit(File schematic, int rotation, Supplier<CompletableFuture<Void>> paste) {
+        PasteJob job = new PasteJob(getCost(schematic, rotation), paste);
+
+        if (!Config.isPasteSchedulerEnabled()) {
+            run(job);
+            flush();
+            return job.result;
+        }
+
+        if (queue.isEmpty() && fitsIntoTick(job)) {
+            immediatePastes++;
+            run(job);
+            flush();
+            startTask();
+            return job.result;
+        }
+
+        queue.add(job);
+        maxQueueSize = Math.max(maxQueueSize, queue.size());
+        startTask();
+        return job.result;
+    }
+
+    /**
+     * This method removes all queued pastes, e.g. when the game ends.
+     */
+    public void clear() {
+        queue.forEach(job -> job.result.cancel(false));
+        queue.clear();
+        stopTask();
+    }
+
+    private void startTask() {
+        if (task != null) return;
+
+        task = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), this::tick, 1, 1);
+    }
+
+    private void stopTask() {
+        if (task == null) return;
+
+        task.cancel();
+        task = null;
+    }
+
+    /**
+     * This method starts a new tick with the full budget and runs the queued
+     * pastes. The task stops, when a tick had nothing to do.
+     */
+    private void tick() {
+        if (tickBlocks > 0) {
+            busyTicks++;
+            totalTickBlocks += tickBlocks;
+        }
+        lastTickBlocks = tickBlocks;
+        lastTickNanos = tickNanos;
+
+        boolean idle = (tickBlocks == 0) && queue.isEmpty();
+        tickBlocks = 0;
+        tickNanos = 0;
+
+        while (!queue.isEmpty() && (tickBlocks == 0 || fitsIntoTick(queue.peek()))) {
+            // The pastes, which fit into the block budget, are batched and written
+            // together. The time limit is checked again with the time of the flush.
+            do {
+                run(queue.poll());
+            } while (!queue.isEmpty() && fitsBlocks(queue.peek()));
+            flush();
+        }
+
+        if (idle) stopTask();
+    }
+
+    private boolean fitsIntoTick(PasteJob job) {
+        return fitsBlocks(job) && (tickNanos < Config.getPasteSchedulerMicrosPerTick() * 1000L);
+    }
+
+    private boolean fitsBlocks(PasteJob job) {
+        return tickBlocks + job.cost <= Config.getPasteSchedulerBlocksPerTick();
+    }
+
+    /**
+     * This method writes the pastes, which the paster batched, in this tick. So
+     * their time is charged to the tick they were started in.
+     */
+    private void flush() {
+        long start = System.nanoTime();
+        try {
+            PasteProvider.getPaster().flushPastes();
+        } catch (RuntimeException exception) {
+            // The futures of the failed pastes are completed by the paster
+            exception.printStackTrace();
+        } finally {
+            tickNanos += System.nanoTime() - start;
+        }
+    }
+
+    private void run(PasteJob job) {
+        long waitTime = System.currentTimeMillis() - job.submitTime;
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max(maxWaitTime, waitTime);
+        pastes++;
+
+        long start = System.nanoTime();
+        try {
+            job.paste.get().whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    job.result.completeExceptionally(throwable);
+                } else {
+                    job.result.complete(null);
+                }
+            });
+        } catch (RuntimeException exception) {
+            // The caller logs the error
+            job.result.completeExceptionally(exception);
+        } finally {
+            tickNanos += System.nanoTime() - start;
+            // A paste costs at least one block, so that the tick counts as used.
+            tickBlocks += Math.max(1, job.cost);
+        }
+    }
+
+    private static int getCost(File schematic, int rotation) {
+        CompiledSchematic compiled = SchematicCompiler.load(schematic);
+        if (compiled == null) return DEFAULT_COST;
+
+        int blockCount = compiled.getBlockCount(rotation);
+        return blockCount < 0 ? DEFAULT_COST : blockCount;
+    }
+
+    /**
+     * This method returns the metrics of the scheduler for the debug output.
+     *
+     * @return (String) the metrics
+     */
+    public String getStatus() {
+        long averageWaitTime = pastes == 0 ? 0 : totalWaitTime / pastes;
+        long averageTickBlocks = busyTicks == 0 ? 0 : totalTickBlocks / busyTicks;
+
+        return "Paste scheduler: " + queue.size() + " queued (max " + maxQueueSize + ")"
+                + " | pastes: " + pastes + " (" + immediatePastes + " immediately)"
+                + " | wait: avg " + averageWaitTime + "ms, max " + maxWaitTime + "ms"
+                + " | work per tick: last " + lastTickBlocks + " blocks in " + (lastTickNanos / 1000) + "µs, avg " + averageTickBlocks + " blocks";
+    }
+
+    private static class PasteJob {
+
+        private final int cost;
+        private final Supplier<CompletableFuture<Void>> paste;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+        private final long submitTime = System.currentTimeMillis();
+
+        private PasteJob(int cost, Supplier<CompletableFuture<Void>> paste) {
+            this.cost = cost;
+            this.paste = paste;
+        }
+    }
+}
@@ -22,6 +22,10 @@ import de.butzlabben.missilewars.game.Team;
 import org.bukkit.util.Vector;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * @author Butzlabben
@@ -31,5 +35,106 @@ public interface Paster {
 
     void pasteSchematic(File schematic, Vector position, org.bukkit.World world);
 
-    void pasteMissile(File schematic, Vector position, int rotation, org.bukkit.World world, Team team);
+    /**
+     * This method pastes the missile.
+     *
+     * @param replaceStartBlocks (boolean) true, if the start blocks are replaced to start the flying machine
+     */
+    void pasteMissile(File schematic, Vector position, int rotation, org.bukkit.World world, Team team, boolean replaceStartBlocks);
+
+    /**
+     * This method pastes the schematic. Pasters, which batch the pastes of a tick
+     * or paste off the server thread, return before the blocks are written. Others
+     * paste directly.
+     *
+     * @return (CompletableFuture) completes on the server thread after the paste
+     */
+    default CompletableFuture<Void> pasteSchematicAsync(File schematic, Vector position, org.bukkit.World world) {
+        pasteSchematic(schematic, position, world);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * This method pastes the missile. Pasters, which batch the pastes of a tick
+     * or paste off the server thread, return before the blocks are written. Others
+     * paste directly.
+     * The blocks of the version of the schematic, which was pasted, are given to
+     * pastedBlocks (if it isn't null), so that they don't differ after a reload.
+     *
+     * @return (CompletableFuture) completes on the server thread after the paste
+     */
+    default CompletableFuture<Void> pasteMissileAsync(File schematic, Vector position, int rotation, org.bukkit.World world, Team team,
+                                                      boolean replaceStartBlocks, BiConsumer<int[], String> pastedBlocks) {
+        pasteMissile(schematic, position, rotation, world, team, replaceStartBlocks);
+        if (pastedBlocks == null) return CompletableFuture.completedFuture(null);
+
+        try {
+            forEachBlock(schematic, rotation, pastedBlocks);
+        } catch (IOException exception) {
+            return CompletableFuture.failedFuture(exception);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * This method writes the pastes, which were batched since the last call, now
+     * instead of at the next tick. Pasters without batches paste directly and do
+     * nothing here. It must be called on the server thread.
+     */
+    default void flushPastes() {
+    }
+
+    /**
+     * This method parses the schematic and its rotated variants into the cache of
+     * the paster. Later pastes of this schematic don't read the file again, until
+     * it's modified. A compiled version of the schematic is used, if available.
+     *
+     * @param schematic (File) the schematic file
+     */
+    void preloadSchematic(File schematic);
+
+    /**
+     * This method parses the schematic file again and replaces the cached version,
+     * e.g. when the file was changed. It's called off the server thread.
+     *
+     * @param schematic (File) the schematic file
+     */
+    void reloadSchematic(File schematic);
+
+    /**
+     * This method sets, whether the schematic folders are watched for changes. Then
+     * the cached schematics are used without checking the files on every paste.
+     *
+     * @param watched (boolean) true, if the schematic folders are watched
+     */
+    void setSchematicsWatched(boolean watched);
+
+    /**
+     * This method removes all cached schematics and frees their memory, e.g. when
+     * the plugin is disabled.
+     */
+    default void clearCache() {
+    }
+
+    /**
+     * This method calls the consumer for every block of the rotated schematic,
+     * except air. It's used to compile the schematic.
+     *
+     * @param schematic (File) the schematic file
+     * @param rotation (int) the rotation around the y-axis in degrees
+     * @param consumer (BiConsumer) the consumer of the position relative to the origin and the block state
+     */
+    void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException;
+
+    /**
+     * This method loads the schematic and splits its paste into several steps,
+     * which paste a few horizontal layers each. Running one step per tick spreads
+     * the paste of large schematics (e.g. whole arenas) over several ticks. The
+     * schematic is read on the calling thread, so this can be called async.
+     *
+     * @param layersPerStep (int) the amount of layers pasted by one step
+     *
+     * @return (List) the paste steps in order, to be run on the server thread
+     */
+    List<Runnable> prepareSchematicPaste(File schematic, Vector position, org.bukkit.World world, int layersPerStep) throws IOException;
 }
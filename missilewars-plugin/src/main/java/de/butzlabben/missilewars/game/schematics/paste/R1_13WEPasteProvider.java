@@ -21,12 +21,18 @@ package de.butzlabben.missilewars.game.schematics.paste;
 import de.butzlabben.missilewars.MissileWars;
 import de.butzlabben.missilewars.configuration.Config;
 import de.butzlabben.missilewars.game.Team;
+import de.butzlabben.missilewars.game.schematics.compiled.CompiledSchematic;
+import de.butzlabben.missilewars.game.schematics.compiled.SchematicCompiler;
 import de.butzlabben.missilewars.missile.paste.r1_13.we.R1_13Paster;
 import de.butzlabben.missilewars.util.version.ColorConverter;
 import org.bukkit.World;
 import org.bukkit.util.Vector;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
 
 /**
  * @author Butzlabben
@@ -37,13 +43,65 @@ public class R1_13WEPasteProvider implements Paster {
     R1_13Paster paster = new R1_13Paster();
 
     @Override
-    public void pasteMissile(File schematic, Vector position, int rotation, World world, Team team) {
+    public void pasteMissile(File schematic, Vector position, int rotation, World world, Team team, boolean replaceStartBlocks) {
         paster.pasteMissile(schematic, position, rotation, world, ColorConverter.getGlassFromColorCode(team.getColorCode()),
-                Config.getReplaceRadius(), Config.getStartReplace(), MissileWars.getInstance(), Config.getReplaceTicks());
+                getReplaceRadius(replaceStartBlocks), Config.getStartReplace(), MissileWars.getInstance(), Config.getReplaceTicks());
     }
 
     @Override
     public void pasteSchematic(File schematic, Vector position, World world) {
         paster.pasteSchematic(schematic, position, world);
     }
+
+    @Override
+    public CompletableFuture<Void> pasteMissileAsync(File schematic, Vector position, int rotation, World world, Team team, boolean replaceStartBlocks,
+                                                     BiConsumer<int[], String> pastedBlocks) {
+        return paster.pasteMissileBatched(schematic, position, rotation, world, ColorConverter.getGlassFromColorCode(team.getColorCode()),
+                getReplaceRadius(replaceStartBlocks), Config.getStartReplace(), MissileWars.getInstance(), Config.getReplaceTicks(), pastedBlocks);
+    }
+
+    @Override
+    public CompletableFuture<Void> pasteSchematicAsync(File schematic, Vector position, World world) {
+        return paster.pasteSchematicBatched(schematic, position, world, MissileWars.getInstance());
+    }
+
+    @Override
+    public void flushPastes() {
+        paster.flushBatches();
+    }
+
+    @Override
+    public void preloadSchematic(File schematic) {
+        CompiledSchematic compiled = SchematicCompiler.load(schematic);
+        if (compiled != null) {
+            paster.preloadCompiled(schematic, compiled.getSourceModificationTime(), compiled.getPalette(), compiled.getLayouts());
+            return;
+        }
+        paster.preloadSchematic(schematic);
+    }
+
+    @Override
+    public void reloadSchematic(File schematic) {
+        paster.reloadSchematic(schematic);
+    }
+
+    @Override
+    public void setSchematicsWatched(boolean watched) {
+        paster.setSchematicsWatched(watched);
+    }
+
+    @Override
+    public void forEachBlock(File schematic, int rotation, BiConsumer<int[], String> consumer) throws IOException {
+        paster.forEachBlock(schematic, rotation, consumer);
+    }
+
+    @Override
+    public List<Runnable> prepareSchematicPaste(File schematic, Vector position, World world, int layersPerStep) throws IOException {
+        return paster.prepareSchematicPaste(schematic, position, world, layersPerStep);
+    }
+
+    // No start block is in the radius -1, so none is replaced.
+    private static int getReplaceRadius(boolean replaceStartBlocks) {
+        return replaceStartBlocks ? Config.getReplaceRadius() : -1;
+    }
 }
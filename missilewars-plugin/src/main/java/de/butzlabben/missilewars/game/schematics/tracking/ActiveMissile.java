@@ -0,0 +1,100 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.tracking;
+
+import de.butzlabben.missilewars.game.Team;
+import lombok.Getter;
+
+/**
+ * A launched missile, which is still flying. Its bounding box is set after the
+ * paste and follows the blocks moved by its pistons.
+ */
+public class ActiveMissile {
+
+    @Getter private final Team team;
+    @Getter private final long launchTime = System.currentTimeMillis();
+    @Getter private long lastActivity = launchTime;
+    @Getter private boolean pasted;
+    @Getter private int cost;
+    private int minX, minY, minZ, maxX, maxY, maxZ;
+
+    ActiveMissile(Team team) {
+        this.team = team;
+    }
+
+    /**
+     * This method sets the bounding box after the paste.
+     */
+    void setBounds(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        pasted = true;
+        markActive();
+    }
+
+    void setCost(int cost) {
+        this.cost = cost;
+    }
+
+    /**
+     * This method marks, that the blocks of the missile changed just now.
+     */
+    public void markActive() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * This method moves the bounding box, e.g. when the missile is moved by the plugin.
+     */
+    public void move(int x, int y, int z) {
+        minX += x;
+        maxX += x;
+        minY += y;
+        maxY += y;
+        minZ += z;
+        maxZ += z;
+        markActive();
+    }
+
+    /**
+     * This method moves the bounding box as little as possible, so that it
+     * contains the position. The size of the box stays the same, as a flying
+     * machine moves as a whole.
+     */
+    void follow(int x, int y, int z) {
+        move(shift(x, minX, maxX), shift(y, minY, maxY), shift(z, minZ, maxZ));
+    }
+
+    private static int shift(int value, int min, int max) {
+        if (value < min) return value - min;
+        if (value > max) return value - max;
+        return 0;
+    }
+
+    boolean contains(int x, int y, int z, int margin) {
+        return pasted
+                && x >= minX - margin && x <= maxX + margin
+                && y >= minY - margin && y <= maxY + margin
+                && z >= minZ - margin && z <= maxZ + margin;
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.tracking;
+
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.configuration.arena.MissileConfiguration;
+import de.butzlabben.missilewars.game.Game;
+import de.butzlabben.missilewars.game.Team;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCost;
+import de.butzlabben.missilewars.game.schematics.analysis.TickCostAnalyzer;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.block.Block;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This class keeps track of the missiles of a game, which are still flying, and
+ * limits their amount per team and per game. A missile is active from its launch
+ * until its blocks didn't change for a while or its TNT exploded. Launches over the
+ * limit can be queued and are launched, when another missile is retired.
+ */
+public class ActiveMissileTracker {
+
+    // The margin around a bounding box, in which piston events and explosions still belong to the missile.
+    private static final int MARGIN = 2;
+    private static final long CHECK_INTERVAL = 10;
+
+    private final Game game;
+    private final List<ActiveMissile> missiles = new ArrayList<>();
+    private final Deque<QueuedLaunch> queue = new ArrayDeque<>();
+    private BukkitTask task;
+    private boolean launching;
+
+    private long launchedMissiles;
+    private long idleRetirements;
+    private long explosionRetirements;
+    private long queuedLaunches;
+    private long refundedLaunches;
+
+    public ActiveMissileTracker(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * This method registers a new missile at its launch. Until it's pasted, it
+     * only counts for the limits.
+     *
+     * @param team (Team) the team of the missile
+     *
+     * @return (ActiveMissile) the active missile
+     */
+    public ActiveMissile register(Team team) {
+        ActiveMissile missile = new ActiveMissile(team);
+        missiles.add(missile);
+        launchedMissiles++;
+        startTask();
+        return missile;
+    }
+
+    /**
+     * This method sets the bounding box of the pasted missile from its blocks.
+     *
+     * @param missile (ActiveMissile) the active missile
+     * @param schematic (File) the schematic file
+     * @param blocks (List) the offsets of the pasted blocks to the paste position
+     * @param position (Vector) the paste position
+     */
+    public void onPasted(ActiveMissile missile, File schematic, List<int[]> blocks, Vector position) {
+        int minX = 0, minY = 0, minZ = 0, maxX = 0, maxY = 0, maxZ = 0;
+        if (!blocks.isEmpty()) {
+            minX = minY = minZ = Integer.MAX_VALUE;
+            maxX = maxY = maxZ = Integer.MIN_VALUE;
+        }
+        for (int[] offset : blocks) {
+            minX = Math.min(minX, offset[0]);
+            minY = Math.min(minY, offset[1]);
+            minZ = Math.min(minZ, offset[2]);
+            maxX = Math.max(maxX, offset[0]);
+            maxY = Math.max(maxY, offset[1]);
+            maxZ = Math.max(maxZ, offset[2]);
+        }
+
+        TickCost cost = TickCostAnalyzer.getCost(schematic);
+        if (cost != null) missile.setCost(cost.getScore());
+
+        int x = position.getBlockX(), y = position.getBlockY(), z = position.getBlockZ();
+        missile.setBounds(x + minX, y + minY, z + minZ, x + maxX, y + maxY, z + maxZ);
+    }
+
+    /**
+     * This method retires the missile, e.g. when its paste failed.
+     *
+     * @param missile (ActiveMissile) the active missile
+     */
+    public void retire(ActiveMissile missile) {
+        if (missiles.remove(missile)) launchQueued();
+    }
+
+    /**
+     * This method checks the limits of the arena for a new missile of the team.
+     *
+     * @param team (Team) the team of the new missile
+     *
+     * @return true, if the team or the game has reached its limit
+     */
+    public boolean isOverLimit(Team team) {
+        MissileConfiguration configuration = game.getArena().getMissileConfiguration();
+
+        int maxPerGame = configuration.getMaxActivePerGame();
+        if (maxPerGame > 0 && missiles.size() >= maxPerGame) return true;
+
+        int maxPerTeam = configuration.getMaxActivePerTeam();
+        return maxPerTeam > 0 && getActiveMissiles(team) >= maxPerTeam;
+    }
+
+    /**
+     * This method queues a launch until the team is below the limits again.
+     *
+     * @param team (Team) the team of the missile
+     * @param launch (Runnable) launches the missile
+     */
+    public void queue(Team team, Runnable launch) {
+        queue.add(new QueuedLaunch(team, launch));
+        queuedLaunches++;
+        startTask();
+    }
+
+    /**
+     * This method counts a launch, which was refused because of the limits.
+     */
+    public void countRefund() {
+        refundedLaunches++;
+    }
+
+    public int getActiveMissiles() {
+        return missiles.size();
+    }
+
+    public int getActiveMissiles(Team team) {
+        int count = 0;
+        for (ActiveMissile missile : missiles) {
+            if (missile.getTeam() == team) count++;
+        }
+        return count;
+    }
+
+    /**
+     * This method marks the missile, which contains the piston, as active and
+     * moves its bounding box along with the moved blocks.
+     *
+     * @param piston (Block) the piston
+     * @param blocks (List) the moved blocks
+     */
+    public void onPiston(Block piston, List<Block> blocks) {
+        ActiveMissile missile = getMissile(piston);
+        if (missile == null) return;
+
+        missile.markActive();
+        missile.follow(piston.getX(), piston.getY(), piston.getZ());
+        for (Block block : blocks) {
+            missile.follow(block.getX(), block.getY(), block.getZ());
+        }
+    }
+
+    /**
+     * This method retires the missile, in which the TNT exploded.
+     *
+     * @param location (Location) the location of the explosion
+     */
+    public void onExplosion(Location location) {
+        ActiveMissile missile = getMissile(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        if (missile == null) return;
+
+        explosionRetirements++;
+        retire(missile);
+    }
+
+    /**
+     * This method returns the missile, which contains the block.
+     *
+     * @param block (Block) the block
+     *
+     * @return (ActiveMissile) the missile or null, if the block belongs to no active missile
+     */
+    public ActiveMissile getMissile(Block block) {
+        return getMissile(block.getX(), block.getY(), block.getZ());
+    }
+
+    private ActiveMissile getMissile(int x, int y, int z) {
+        for (ActiveMissile missile : missiles) {
+            if (missile.contains(x, y, z, MARGIN)) return missile;
+        }
+        return null;
+    }
+
+    /**
+     * This method removes all missiles and queued launches, e.g. when the game ends.
+     */
+    public void clear() {
+        missiles.clear();
+        queue.clear();
+        stopTask();
+    }
+
+    private void startTask() {
+        if (task != null) return;
+
+        task = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), this::tick, CHECK_INTERVAL, CHECK_INTERVAL);
+    }
+
+    private void stopTask() {
+        if (task == null) return;
+
+        task.cancel();
+        task = null;
+    }
+
+    /**
+     * This method retires the missiles, whose blocks stopped changing or which
+     * exceeded the maximum lifetime. Missiles, which are not pasted yet, are only
+     * retired after the maximum lifetime.
+     */
+    private void tick() {
+        long now = System.currentTimeMillis();
+        long idleTime = Config.getActiveMissileIdleSeconds() * 1000L;
+        long lifetime = Config.getActiveMissileMaxLifetime() * 1000L;
+
+        Iterator<ActiveMissile> iterator = missiles.iterator();
+        while (iterator.hasNext()) {
+            ActiveMissile missile = iterator.next();
+            boolean idle = missile.isPasted() && (now - missile.getLastActivity() > idleTime);
+            if (!idle && (now - missile.getLaunchTime() <= lifetime)) continue;
+
+            idleRetirements++;
+            iterator.remove();
+        }
+
+        launchQueued();
+        if (missiles.isEmpty() && queue.isEmpty()) stopTask();
+    }
+
+    /**
+     * This method launches the queued missiles in their order, as long as their
+     * teams are below the limits.
+     */
+    private void launchQueued() {
+        // A launch, which fails directly, retires its missile and calls this method
+        // again. The running loop launches the next missiles then.
+        if (launching) return;
+
+        launching = true;
+        try {
+            QueuedLaunch launch;
+            while ((launch = pollLaunchable()) != null) {
+                launch.launch.run();
+            }
+        } finally {
+            launching = false;
+        }
+    }
+
+    /**
+     * This method removes the first queued launch, whose team is below the limits.
+     * The queue is searched again for every launch, as each launch changes the
+     * number of active missiles.
+     */
+    private QueuedLaunch pollLaunchable() {
+        Iterator<QueuedLaunch> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            QueuedLaunch launch = iterator.next();
+            if (isOverLimit(launch.team)) continue;
+
+            iterator.remove();
+            return launch;
+        }
+        return null;
+    }
+
+    /**
+     * This method returns the metrics of the tracker for the debug output.
+     *
+     * @return (String) the metrics
+     */
+    public String getStatus() {
+        return "Active missiles: " + missiles.size() + " (" + queue.size() + " queued)"
+                + " | launched: " + launchedMissiles + " | retired: " + idleRetirements + " idle, " + explosionRetirements + " exploded"
+                + " | queued: " + queuedLaunches + " | refunded: " + refundedLaunches;
+    }
+
+    private static class QueuedLaunch {
+
+        private final Team team;
+        private final Runnable launch;
+
+        private QueuedLaunch(Team team, Runnable launch) {
+            this.team = team;
+            this.launch = launch;
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.schematics.tracking;
+
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.Game;
+import de.butzlabben.missilewars.game.world.ResetWorlds;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.type.Piston;
+import org.bukkit.block.data.type.PistonHead;
+import org.bukkit.block.data.type.TechnicalPiston;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class counts the piston and physics events in the game world per tick. The
+ * piston budget of a tick is shared among the missiles by the configured order:
+ * the newest or cheapest missiles get their share first, so the oldest or most
+ * expensive missiles are the ones to be delayed. A delayed extension is done by
+ * the governor itself in a later tick. An extension, which was delayed too often
+ * or can't be done anymore, is dropped and its missile counts as stalled.
+ */
+public class ActivityGovernor {
+
+    private final Game game;
+    private final Map<Block, DelayedExtension> delayed = new LinkedHashMap<>();
+    // The extensions per missile in this tick and the shares of the budget, which are reserved for them in the next tick.
+    private final Map<ActiveMissile, Integer> demand = new HashMap<>();
+    private final Map<ActiveMissile, Integer> shares = new HashMap<>();
+    private final Set<ActiveMissile> stalledMissiles = new HashSet<>();
+    private BukkitTask task;
+
+    private int pistonEvents;
+    private int physicsEvents;
+    private int reserved;
+    private boolean throttled;
+
+    private int lastPistonEvents;
+    private int lastPhysicsEvents;
+    private int peakPistonEvents;
+    private int peakPhysicsEvents;
+    private long throttledTicks;
+    private long delayedExtensions;
+    private long cancelledExtensions;
+
+    public ActivityGovernor(Game game) {
+        this.game = game;
+    }
+
+    /**
+     * This method counts a physics event. Physics events are not throttled, but
+     * they use up the budget for piston extensions.
+     */
+    public void onPhysics() {
+        physicsEvents++;
+        startTask();
+    }
+
+    /**
+     * This method counts a piston retraction. Retractions are not throttled, as
+     * the piston head would be left behind.
+     */
+    public void onPistonRetract() {
+        pistonEvents++;
+        startTask();
+    }
+
+    /**
+     * This method counts a piston extension and checks it against the budget of
+     * the current tick.
+     *
+     * @param piston (Block) the piston
+     * @param direction (BlockFace) the direction of the extension
+     * @param blocks (List) the blocks, which are pushed by the piston
+     *
+     * @return true, if the extension has to be cancelled. It's either done by the
+     * governor in a later tick or dropped.
+     */
+    public boolean onPistonExtend(Block piston, BlockFace direction, List<Block> blocks) {
+        startTask();
+
+        DelayedExtension waiting = delayed.get(piston);
+        if (waiting != null) {
+            // The piston was updated while it waits, so only the pushed blocks are taken over.
+            delayed.put(piston, new DelayedExtension(piston, direction, blocks, waiting.missile, waiting.delays));
+            return true;
+        }
+
+        ActiveMissile missile = game.getActiveMissiles().getMissile(piston);
+        demand.merge(missile, 1, Integer::sum);
+        if (admit(missile)) return false;
+
+        delay(new DelayedExtension(piston, direction, blocks, missile, 0));
+        return true;
+    }
+
+    /**
+     * This method checks, if an extension of the missile fits into the budget of
+     * the current tick, and counts it. An extension, which is not covered by the
+     * share of its missile, may only use the part of the budget, which is not
+     * reserved for other missiles.
+     */
+    private boolean admit(ActiveMissile missile) {
+        int maxPhysics = Config.getActivityGovernorMaxPhysics();
+        if (maxPhysics > 0 && physicsEvents >= maxPhysics) return false;
+
+        int maxPistons = Config.getActivityGovernorMaxPistons();
+        if (maxPistons > 0) {
+            if (pistonEvents >= maxPistons) return false;
+
+            int share = shares.getOrDefault(missile, 0);
+            if (share > 0) {
+                shares.put(missile, share - 1);
+                reserved--;
+            } else if (pistonEvents + reserved >= maxPistons) {
+                return false;
+            }
+        }
+
+        pistonEvents++;
+        return true;
+    }
+
+    private void delay(DelayedExtension extension) {
+        throttled = true;
+        if (extension.delays >= Config.getActivityGovernorMaxDelayTicks()) {
+            drop(extension.missile);
+            return;
+        }
+
+        extension.delays++;
+        delayed.put(extension.piston, extension);
+        delayedExtensions++;
+    }
+
+    private void drop(ActiveMissile missile) {
+        cancelledExtensions++;
+        if (missile != null) stalledMissiles.add(missile);
+    }
+
+    /**
+     * This method removes all delayed extensions, e.g. when the game ends.
+     */
+    public void clear() {
+        delayed.clear();
+        demand.clear();
+        shares.clear();
+        stalledMissiles.clear();
+        pistonEvents = 0;
+        physicsEvents = 0;
+        reserved = 0;
+        throttled = false;
+        stopTask();
+    }
+
+    private void startTask() {
+        if (task != null) return;
+
+        task = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), this::tick, 1, 1);
+    }
+
+    private void stopTask() {
+        if (task == null) return;
+
+        task.cancel();
+        task = null;
+    }
+
+    /**
+     * This method closes the counters of the last tick and does the delayed
+     * extensions. The scheduler runs before the worlds are ticked, so the delayed
+     * extensions are the first to use the budget of the new tick.
+     */
+    private void tick() {
+        boolean active = pistonEvents > 0 || physicsEvents > 0 || !delayed.isEmpty();
+
+        lastPistonEvents = pistonEvents;
+        lastPhysicsEvents = physicsEvents;
+        peakPistonEvents = Math.max(peakPistonEvents, pistonEvents);
+        peakPhysicsEvents = Math.max(peakPhysicsEvents, physicsEvents);
+        if (throttled) throttledTicks++;
+
+        pistonEvents = 0;
+        physicsEvents = 0;
+        throttled = false;
+        reserveShares();
+
+        if (!active) {
+            stopTask();
+            return;
+        }
+
+        List<DelayedExtension> extensions = new ArrayList<>(delayed.values());
+        delayed.clear();
+        extensions.sort(Comparator.comparing(extension -> extension.missile, getPriority()));
+        for (DelayedExtension extension : extensions) {
+            demand.merge(extension.missile, 1, Integer::sum);
+            if (!admit(extension.missile)) {
+                delay(extension);
+            } else if (!extend(extension)) {
+                drop(extension.missile);
+            }
+        }
+    }
+
+    /**
+     * This method reserves the piston budget of the new tick for the missiles by
+     * the configured order. Each missile gets as many extensions as it had in the
+     * last tick, until the budget is used up.
+     */
+    private void reserveShares() {
+        shares.clear();
+        reserved = 0;
+
+        int remaining = Config.getActivityGovernorMaxPistons();
+        if (remaining > 0) {
+            List<ActiveMissile> missiles = new ArrayList<>(demand.keySet());
+            missiles.sort(getPriority());
+            for (ActiveMissile missile : missiles) {
+                if (remaining <= 0) break;
+
+                int share = Math.min(demand.get(missile), remaining);
+                shares.put(missile, share);
+                reserved += share;
+                remaining -= share;
+            }
+        }
+
+        demand.clear();
+    }
+
+    /**
+     * This method returns the order, in which the missiles get the budget. The
+     * oldest or most expensive missiles come last. Pistons, which belong to no
+     * missile, are handled like the newest and cheapest missile.
+     */
+    private Comparator<ActiveMissile> getPriority() {
+        if (Config.isActivityGovernorExpensiveFirst()) return Comparator.comparingInt(ActivityGovernor::getCost);
+        return Comparator.comparingLong(ActivityGovernor::getLaunchTime).reversed();
+    }
+
+    private static long getLaunchTime(ActiveMissile missile) {
+        return (missile == null) ? Long.MAX_VALUE : missile.getLaunchTime();
+    }
+
+    private static int getCost(ActiveMissile missile) {
+        return (missile == null) ? 0 : missile.getCost();
+    }
+
+    /**
+     * This method moves the pushed blocks and extends the piston, as the redstone
+     * signal, which powered it, may be gone by now. The changed blocks notify their
+     * neighbours, so the observers of the missile see the move like a normal one.
+     *
+     * @return false, if the piston or the pushed blocks were changed in the meantime
+     * or the way is blocked
+     */
+    private boolean extend(DelayedExtension extension) {
+        Block piston = extension.piston;
+        if (!piston.getWorld().isChunkLoaded(piston.getX() >> 4, piston.getZ() >> 4)) return false;
+        if (!piston.getBlockData().equals(extension.pistonData)) return false;
+        for (int i = 0; i < extension.blocks.size(); i++) {
+            if (!extension.blocks.get(i).getBlockData().equals(extension.blockData.get(i))) return false;
+        }
+
+        BlockFace direction = extension.direction;
+        Block head = piston.getRelative(direction);
+        Set<Block> sources = new HashSet<>(extension.blocks);
+        Set<Block> targets = new HashSet<>();
+        for (Block block : extension.blocks) {
+            targets.add(block.getRelative(direction));
+        }
+        targets.add(head);
+        for (Block target : targets) {
+            if (!sources.contains(target) && !isReplaceable(target)) return false;
+        }
+
+        for (Block block : extension.blocks) {
+            block.setType(Material.AIR, false);
+        }
+        for (int i = 0; i < extension.blocks.size(); i++) {
+            extension.blocks.get(i).getRelative(direction).setBlockData(extension.blockData.get(i), true);
+        }
+
+        Piston pistonData = (Piston) extension.pistonData.clone();
+        pistonData.setExtended(true);
+        piston.setBlockData(pistonData, false);
+
+        PistonHead headData = (PistonHead) Material.PISTON_HEAD.createBlockData();
+        headData.setFacing(direction);
+        headData.setType((piston.getType() == Material.STICKY_PISTON) ? TechnicalPiston.Type.STICKY : TechnicalPiston.Type.NORMAL);
+        head.setBlockData(headData, true);
+
+        for (Block source : sources) {
+            if (!targets.contains(source)) source.getState().update(true, true);
+        }
+
+        ResetWorlds resetWorlds = ResetWorlds.getInstance();
+        resetWorlds.markTouched(piston);
+        for (Block target : targets) {
+            resetWorlds.markTouched(target);
+        }
+        game.getActiveMissiles().onPiston(piston, extension.blocks);
+        return true;
+    }
+
+    // A nether portal is passable, but a piston can't push into it.
+    private static boolean isReplaceable(Block block) {
+        Material type = block.getType();
+        return VersionUtil.isAir(type) || (block.isPassable() && !block.isLiquid() && type != Material.NETHER_PORTAL);
+    }
+
+    /**
+     * This method returns the metrics of the governor for the debug output.
+     *
+     * @return (String) the metrics
+     */
+    public String getStatus() {
+        return "Activity governor: last tick " + lastPistonEvents + " pistons, " + lastPhysicsEvents + " physics"
+                + " | peak: " + peakPistonEvents + " pistons, " + peakPhysicsEvents + " physics"
+                + " | throttled ticks: " + throttledTicks + " | delayed: " + delayedExtensions + " (" + delayed.size() + " waiting)"
+                + " | cancelled: " + cancelledExtensions + " | stalled missiles: " + stalledMissiles.size();
+    }
+
+    private static class DelayedExtension {
+
+        private final Block piston;
+        private final BlockData pistonData;
+        private final BlockFace direction;
+        private final List<Block> blocks;
+        private final List<BlockData> blockData = new ArrayList<>();
+        private final ActiveMissile missile;
+        private int delays;
+
+        private DelayedExtension(Block piston, BlockFace direction, List<Block> blocks, ActiveMissile missile, int delays) {
+            this.piston = piston;
+            this.pistonData = piston.getBlockData();
+            this.direction = direction;
+            this.blocks = new ArrayList<>(blocks);
+            this.missile = missile;
+            this.delays = delays;
+
+            for (Block block : blocks) {
+                blockData.add(block.getBlockData());
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ public class LobbyTimer extends Timer implements Runnable {
 
     private final int startTime;
     private int remaining = 90; // for sending messages
+    private boolean forceStart = false;
 
 
     public LobbyTimer(Game game, int startTime) {
@@ -83,6 +84,15 @@ public class LobbyTimer extends Timer implements Runnable {
                 playPling();
                 break;
             case 0:
+                // The world of the arena may still be copied. The game starts as soon as it is loaded.
+                if (!getGame().isReady()) {
+                    if (getGame().isArenaLoadFailed()) {
+                        broadcast(Messages.getMessage(true, Messages.MessageEnum.GAME_CAN_NOT_STARTET));
+                        seconds = startTime;
+                    }
+                    return;
+                }
+
                 if (!getGame().getTeamManager().hasBalancedTeamSizes()) {
                     broadcast(Messages.getMessage(true, Messages.MessageEnum.LOBBY_TEAMS_UNEQUAL));
                     seconds = startTime;
@@ -103,6 +113,40 @@ public class LobbyTimer extends Timer implements Runnable {
         }
     }
 
+    /**
+     * This method starts the game without the checks of the countdown, e.g. with
+     * "/mw start". If the world of the arena is still loading, the game starts as
+     * soon as it is ready.
+     */
+    public void forceStart() {
+        if (getGame().isReady()) {
+            executeGameStart();
+            return;
+        }
+        forceStart = true;
+    }
+
+    /**
+     * This method is called when the game is ready. A pending forced start is
+     * executed now.
+     */
+    public void onGameReady() {
+        if (!forceStart) return;
+
+        forceStart = false;
+        executeGameStart();
+    }
+
+    /**
+     * This method is called when the world of the arena could not be loaded. A
+     * pending forced start is dropped and the countdown starts again.
+     */
+    public void onArenaLoadFailed() {
+        forceStart = false;
+        seconds = startTime;
+        broadcast(Messages.getMessage(true, Messages.MessageEnum.GAME_CAN_NOT_STARTET));
+    }
+
     /**
      * This method executes the game start. In addition, the participants
      * are informed about the start.
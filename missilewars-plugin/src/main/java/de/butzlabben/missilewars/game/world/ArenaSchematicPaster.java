@@ -0,0 +1,117 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.configuration.arena.ArenaSchematicConfiguration;
+import de.butzlabben.missilewars.game.schematics.paste.PasteProvider;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * This class builds an arena by pasting its schematic into an empty game world.
+ * The paste is split into layers, of which one batch is pasted per tick, so that
+ * no region files have to be copied and the server thread is never blocked long.
+ */
+public class ArenaSchematicPaster {
+
+    // The paste steps must be run on the server thread.
+    private static final Executor SYNC_EXECUTOR = task -> Bukkit.getScheduler().runTask(MissileWars.getInstance(), task);
+
+    private ArenaSchematicPaster() {
+    }
+
+    /**
+     * This method returns the schematic file of the arena. It is relative to the
+     * arenas folder.
+     *
+     * @param config (ArenaSchematicConfiguration) the schematic configuration of the arena
+     *
+     * @return (File) the schematic file
+     */
+    public static File getSchematicFile(ArenaSchematicConfiguration config) {
+        return new File(Config.getArenasFolder(), config.getFile());
+    }
+
+    /**
+     * This method pastes the arena schematic into the world, spread over several
+     * ticks. The schematic is read on the I/O executor, only the paste steps are
+     * run on the server thread.
+     *
+     * @param config (ArenaSchematicConfiguration) the schematic configuration of the arena
+     * @param world (World) the empty game world
+     *
+     * @return (CompletableFuture) completes with the world on the server thread after the last layer
+     */
+    public static CompletableFuture<World> paste(ArenaSchematicConfiguration config, World world) {
+        File schematic = getSchematicFile(config);
+        Vector position = new Vector(config.getX(), config.getY(), config.getZ());
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return PasteProvider.getPaster().prepareSchematicPaste(schematic, position, world, config.getLayersPerTick());
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            }
+        }, TemplateCopier.getExecutor()).thenComposeAsync(steps -> runSteps(schematic, world, new ArrayDeque<>(steps)), SYNC_EXECUTOR);
+    }
+
+    /**
+     * This method runs one paste step per tick.
+     */
+    private static CompletableFuture<World> runSteps(File schematic, World world, Deque<Runnable> steps) {
+        CompletableFuture<World> future = new CompletableFuture<>();
+        long start = System.currentTimeMillis();
+        int stepCount = steps.size();
+        String worldName = world.getName();
+
+        BukkitTask[] task = new BukkitTask[1];
+        task[0] = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), () -> {
+            // The game was reset and the world unloaded during the paste.
+            if (Bukkit.getWorld(worldName) == null) {
+                task[0].cancel();
+                future.completeExceptionally(new CancellationException("The game world \"" + worldName + "\" was unloaded during the arena paste"));
+                return;
+            }
+
+            if (!steps.isEmpty()) steps.poll().run();
+            if (!steps.isEmpty()) return;
+
+            task[0].cancel();
+            Logger.DEBUG.log("Pasted arena schematic \"" + schematic.getName() + "\" into \"" + worldName + "\" in "
+                    + stepCount + " ticks (" + (System.currentTimeMillis() - start) + "ms)");
+            future.complete(world);
+        }, 0, 1);
+
+        return future;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.util.geometry.GameArea;
+import lombok.Getter;
+import lombok.Setter;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+import org.bukkit.util.Vector;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class is one place for an arena inside a loaded world, which is reused
+ * for several games. A reset world has exactly one slot at the original position
+ * of the template. A shared world has several slots next to each other along the
+ * x axis, each with its own copy of the arena.
+ * <p>
+ * The chunks of the slot that were changed during a game are marked and only
+ * these are restored from the snapshot afterwards.
+ */
+public class ArenaSlot {
+
+    @Getter private final ArenaSnapshot snapshot;
+    @Getter private final World world;
+    @Getter private final int index;
+    @Getter private final int offsetChunkX;
+    // The width of the slot cell in blocks. 0 = the whole world belongs to the slot
+    private final int cellWidth;
+    private final Set<Long> touchedChunks = new HashSet<>();
+    @Getter @Setter private boolean inUse;
+    private boolean prepared;
+    private CompletableFuture<Void> preparation;
+    private CompletableFuture<Void> restoration;
+    private BukkitTask restoreTask;
+    @Getter private long lastRestoreTime;
+    @Getter private int lastRestoredBlocks;
+
+    ArenaSlot(ArenaSnapshot snapshot, World world, int index, int offsetChunkX, int cellWidth, boolean prepared) {
+        this.snapshot = snapshot;
+        this.world = world;
+        this.index = index;
+        this.offsetChunkX = offsetChunkX;
+        this.cellWidth = cellWidth;
+        this.prepared = prepared;
+    }
+
+    /**
+     * This method returns the offset of the slot to the original position of the
+     * arena in the template.
+     *
+     * @return (Vector) the block offset
+     */
+    public Vector getOffset() {
+        return new Vector(offsetChunkX << 4, 0, 0);
+    }
+
+    public boolean isShared() {
+        return cellWidth > 0;
+    }
+
+    /**
+     * This method checks if the location belongs to this slot. For shared worlds,
+     * this is the cell of the slot around its game area.
+     *
+     * @param location (Location) the location to be checked
+     *
+     * @return true, if it's inside the slot
+     */
+    public boolean isInCell(Location location) {
+        if (!isShared()) return true;
+
+        GameArea area = snapshot.getArea();
+        double centerX = (area.getMinX() + area.getMaxX()) / 2.0 + (offsetChunkX << 4);
+        return Math.abs(location.getX() - centerX) < cellWidth / 2.0;
+    }
+
+    /**
+     * This method marks the chunk of the block position as changed, if it belongs
+     * to the arena of this slot.
+     *
+     * @param x (int) the block x coordinate
+     * @param z (int) the block z coordinate
+     */
+    public void markTouched(int x, int z) {
+        long key = ArenaSnapshot.getChunkKey((x >> 4) - offsetChunkX, z >> 4);
+        if (snapshot.containsChunk(key)) touchedChunks.add(key);
+    }
+
+    /**
+     * This method marks all chunks in the horizontal radius around the position as
+     * changed.
+     *
+     * @param x (int) the block x coordinate
+     * @param z (int) the block z coordinate
+     * @param radius (int) the radius in blocks
+     */
+    public void markTouched(int x, int z, int radius) {
+        for (int chunkX = (x - radius) >> 4; chunkX <= (x + radius) >> 4; chunkX++) {
+            for (int chunkZ = (z - radius) >> 4; chunkZ <= (z + radius) >> 4; chunkZ++) {
+                markTouched(chunkX << 4, chunkZ << 4);
+            }
+        }
+    }
+
+    /**
+     * This method copies the arena into the slot, if this wasn't done yet. The
+     * chunks are set over several ticks, limited by a time budget per tick. If the
+     * slot is still restored after the last game, it's ready after the restore.
+     *
+     * @return (CompletableFuture) completes on the server thread when the slot is ready
+     */
+    public CompletableFuture<Void> prepare() {
+        if (restoration != null) return restoration.thenCompose(ignored -> prepare());
+        if (prepared) return CompletableFuture.completedFuture(null);
+        if (preparation != null) return preparation;
+
+        long start = System.currentTimeMillis();
+        Deque<Long> queue = new ArrayDeque<>(snapshot.getChunkKeys());
+        preparation = new CompletableFuture<>();
+
+        BukkitTask[] task = new BukkitTask[1];
+        task[0] = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), () -> {
+            long end = System.nanoTime() + Config.getSharedWorldTickBudget() * 1_000_000L;
+
+            while (!queue.isEmpty() && System.nanoTime() < end) {
+                snapshot.apply(world, offsetChunkX, Collections.singleton(queue.poll()));
+            }
+            if (!queue.isEmpty()) return;
+
+            task[0].cancel();
+            prepared = true;
+            Logger.DEBUG.log("Prepared slot " + index + " of \"" + world.getName() + "\" in " + (System.currentTimeMillis() - start) + "ms");
+            preparation.complete(null);
+        }, 1, 1);
+
+        return preparation;
+    }
+
+    /**
+     * This method restores all changed chunks of the slot to their saved state and
+     * removes the remaining entities. Like the preparation, the chunks are set over
+     * several ticks, limited by a time budget per tick.
+     *
+     * @return (CompletableFuture) completes on the server thread when the slot is restored
+     */
+    public CompletableFuture<Void> restore() {
+        if (restoration != null) return restoration;
+
+        // An unfinished preparation sets all chunks anyway.
+        if (!prepared) {
+            touchedChunks.clear();
+            return (preparation != null) ? preparation : CompletableFuture.completedFuture(null);
+        }
+
+        long start = System.currentTimeMillis();
+        int chunkCount = touchedChunks.size();
+        Deque<Long> queue = new ArrayDeque<>(touchedChunks);
+        touchedChunks.clear();
+        snapshot.removeEntities(world, offsetChunkX);
+
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        restoration = future;
+        int[] restoredBlocks = new int[1];
+
+        restoreTask = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), () -> {
+            long end = System.nanoTime() + Config.getSharedWorldTickBudget() * 1_000_000L;
+
+            while (!queue.isEmpty() && System.nanoTime() < end) {
+                restoredBlocks[0] += snapshot.apply(world, offsetChunkX, Collections.singleton(queue.poll()));
+            }
+            if (!queue.isEmpty()) return;
+
+            restoreTask.cancel();
+            restoreTask = null;
+            restoration = null;
+            // Entities, which were spawned during the restore (e.g. falling blocks), are removed as well.
+            snapshot.removeEntities(world, offsetChunkX);
+
+            lastRestoredBlocks = restoredBlocks[0];
+            lastRestoreTime = System.currentTimeMillis() - start;
+            Logger.DEBUG.log("Restored " + lastRestoredBlocks + " blocks in " + chunkCount + " chunks of slot "
+                    + index + " in \"" + world.getName() + "\" in " + lastRestoreTime + "ms");
+            future.complete(null);
+        }, 1, 1);
+
+        return future;
+    }
+
+    public boolean isRestoring() {
+        return restoration != null;
+    }
+
+    /**
+     * This method stops a running restore, e.g. when the world is unloaded.
+     */
+    public void cancelRestore() {
+        if (restoreTask == null) return;
+
+        restoreTask.cancel();
+        restoreTask = null;
+        restoration.cancel(false);
+        restoration = null;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.util.geometry.GameArea;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import lombok.Getter;
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class holds the original state of all chunks inside the game area of a
+ * loaded arena world. It can be applied to the same place again, or with an
+ * offset to another slot of a shared world.
+ * <p>
+ * Chunk snapshots only contain the block data, so the content of containers
+ * (e.g. chests) is not restored.
+ */
+public class ArenaSnapshot {
+
+    @Getter private final String templateName;
+    @Getter private final GameArea area;
+    private final Map<Long, ChunkSnapshot> chunks = new HashMap<>();
+
+    private ArenaSnapshot(String templateName, GameArea area) {
+        this.templateName = templateName;
+        this.area = area;
+    }
+
+    /**
+     * This method loads all chunks of the game area and saves their current state.
+     *
+     * @param templateName (String) the name of the template world
+     * @param world (World) the loaded arena world
+     * @param area (GameArea) the game area of the arena
+     *
+     * @return (ArenaSnapshot) the new snapshot
+     */
+    public static ArenaSnapshot capture(String templateName, World world, GameArea area) {
+        long start = System.currentTimeMillis();
+        ArenaSnapshot snapshot = new ArenaSnapshot(templateName, area);
+
+        for (int chunkX = area.getMinX() >> 4; chunkX <= area.getMaxX() >> 4; chunkX++) {
+            for (int chunkZ = area.getMinZ() >> 4; chunkZ <= area.getMaxZ() >> 4; chunkZ++) {
+                Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+                snapshot.chunks.put(getChunkKey(chunkX, chunkZ), chunk.getChunkSnapshot(false, false, false));
+            }
+        }
+
+        Logger.DEBUG.log("Saved " + snapshot.chunks.size() + " chunks of \"" + world.getName() + "\" in " + (System.currentTimeMillis() - start) + "ms");
+        return snapshot;
+    }
+
+    public static long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    public boolean containsChunk(long key) {
+        return chunks.containsKey(key);
+    }
+
+    public Set<Long> getChunkKeys() {
+        return chunks.keySet();
+    }
+
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    /**
+     * This method sets the saved state of the given chunks. Only blocks that differ
+     * from the snapshot are set, without physics updates.
+     *
+     * @param world (World) the target world
+     * @param offsetChunkX (int) the x offset of the target in chunks
+     * @param keys (Collection) the keys of the saved chunks to apply
+     *
+     * @return (int) the number of changed blocks
+     */
+    public int apply(World world, int offsetChunkX, Collection<Long> keys) {
+        int changedBlocks = 0;
+
+        int minY = Math.max(area.getMinY(), VersionUtil.getVersion() >= 17 ? world.getMinHeight() : 0);
+        int maxY = Math.min(area.getMaxY(), world.getMaxHeight() - 1);
+
+        for (long key : keys) {
+            ChunkSnapshot snapshot = chunks.get(key);
+            if (snapshot == null) continue;
+            Chunk chunk = world.getChunkAt(snapshot.getX() + offsetChunkX, snapshot.getZ());
+
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        BlockData original = snapshot.getBlockData(x, y, z);
+                        Block block = chunk.getBlock(x, y, z);
+                        if (block.getBlockData().equals(original)) continue;
+
+                        block.setBlockData(original, false);
+                        changedBlocks++;
+                    }
+                }
+            }
+        }
+
+        return changedBlocks;
+    }
+
+    /**
+     * This method removes all entities except players (e.g. primed TNT or items)
+     * inside the saved chunks.
+     *
+     * @param world (World) the target world
+     * @param offsetChunkX (int) the x offset of the target in chunks
+     */
+    public void removeEntities(World world, int offsetChunkX) {
+        for (Entity entity : world.getEntities()) {
+            if (entity instanceof Player) continue;
+
+            int chunkX = (entity.getLocation().getBlockX() >> 4) - offsetChunkX;
+            int chunkZ = entity.getLocation().getBlockZ() >> 4;
+            if (!chunks.containsKey(getChunkKey(chunkX, chunkZ))) continue;
+
+            entity.remove();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.util.geometry.GameArea;
+import de.butzlabben.missilewars.util.version.PaperUtil;
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class loads all chunks of the game area during the lobby phase, so that
+ * the teleport at the game start doesn't load them in one tick. The chunks near
+ * the given spawns are loaded first. All loaded chunks get a plugin chunk ticket,
+ * which keeps them loaded until the game ends. Before 1.14, which has no chunk
+ * tickets, the chunks are force loaded instead.
+ * <p>
+ * On Paper the chunks are loaded asynchronously. On Spigot they are loaded on
+ * the server thread, limited by a time budget per tick.
+ */
+public class ChunkPreloader {
+
+    // The maximum number of asynchronous chunk requests at the same time.
+    private static final int PARALLEL_REQUESTS = 16;
+
+    private final World world;
+    private final Deque<int[]> queue = new ArrayDeque<>();
+    private final Set<Long> tickets = new HashSet<>();
+    private final int total;
+    private int running = 0;
+    private boolean released = false;
+    private BukkitTask task;
+    private long startTime;
+    private long duration = -1;
+
+    public ChunkPreloader(GameArea area, Location... spawns) {
+        this.world = area.getWorld();
+
+        List<int[]> chunks = new ArrayList<>();
+        for (int chunkX = area.getMinX() >> 4; chunkX <= area.getMaxX() >> 4; chunkX++) {
+            for (int chunkZ = area.getMinZ() >> 4; chunkZ <= area.getMaxZ() >> 4; chunkZ++) {
+                chunks.add(new int[] {chunkX, chunkZ});
+            }
+        }
+        chunks.sort(Comparator.comparingInt(chunk -> getSpawnDistance(chunk, spawns)));
+
+        queue.addAll(chunks);
+        total = chunks.size();
+    }
+
+    private static int getSpawnDistance(int[] chunk, Location... spawns) {
+        int distance = Integer.MAX_VALUE;
+        for (Location spawn : spawns) {
+            if (spawn == null) continue;
+
+            int dx = chunk[0] - (spawn.getBlockX() >> 4);
+            int dz = chunk[1] - (spawn.getBlockZ() >> 4);
+            distance = Math.min(distance, dx * dx + dz * dz);
+        }
+        return distance;
+    }
+
+    private static long getChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * This method starts the loading of the chunks.
+     */
+    public void start() {
+        startTime = System.currentTimeMillis();
+
+        if (PaperUtil.isAsyncChunkLoadingSupported()) {
+            for (int i = 0; i < PARALLEL_REQUESTS; i++) {
+                requestNext();
+            }
+        } else {
+            task = Bukkit.getScheduler().runTaskTimer(MissileWars.getInstance(), this::loadWithBudget, 1, 1);
+        }
+    }
+
+    private void requestNext() {
+        if (released) return;
+
+        int[] chunk = queue.poll();
+        if (chunk == null) {
+            checkFinished();
+            return;
+        }
+
+        CompletableFuture<Chunk> future = PaperUtil.getChunkAtAsync(world, chunk[0], chunk[1]);
+        if (future == null) {
+            onLoaded(world.getChunkAt(chunk[0], chunk[1]));
+            requestNext();
+            return;
+        }
+
+        running++;
+        future.whenComplete((loadedChunk, throwable) -> {
+            running--;
+            if (loadedChunk != null) onLoaded(loadedChunk);
+            requestNext();
+        });
+    }
+
+    private void loadWithBudget() {
+        long end = System.nanoTime() + Config.getChunkPreloadTickBudget() * 1_000_000L;
+
+        while (!queue.isEmpty() && System.nanoTime() < end) {
+            int[] chunk = queue.poll();
+            onLoaded(world.getChunkAt(chunk[0], chunk[1]));
+        }
+
+        if (queue.isEmpty()) {
+            task.cancel();
+            task = null;
+            checkFinished();
+        }
+    }
+
+    private void onLoaded(Chunk chunk) {
+        if (released) return;
+
+        if (VersionUtil.getVersion() < 14) {
+            // Chunks, which were already force loaded, stay force loaded after the release.
+            if (chunk.isForceLoaded()) return;
+
+            chunk.setForceLoaded(true);
+            tickets.add(getChunkKey(chunk.getX(), chunk.getZ()));
+            return;
+        }
+
+        if (chunk.addPluginChunkTicket(MissileWars.getInstance())) {
+            tickets.add(getChunkKey(chunk.getX(), chunk.getZ()));
+        }
+    }
+
+    private void checkFinished() {
+        if (duration >= 0 || running > 0 || !queue.isEmpty()) return;
+
+        duration = System.currentTimeMillis() - startTime;
+        Logger.DEBUG.log("Preloaded " + total + " chunks of \"" + world.getName() + "\" in " + duration + "ms");
+    }
+
+    /**
+     * This method stops the loading and removes all chunk tickets, so that the
+     * chunks can be unloaded again.
+     */
+    public void release() {
+        released = true;
+        queue.clear();
+
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        for (long key : tickets) {
+            if (VersionUtil.getVersion() < 14) {
+                world.setChunkForceLoaded((int) (key >> 32), (int) key, false);
+            } else {
+                world.removePluginChunkTicket((int) (key >> 32), (int) key, MissileWars.getInstance());
+            }
+        }
+        tickets.clear();
+    }
+
+    public int getPendingChunks() {
+        return queue.size() + running;
+    }
+
+    /**
+     * This method returns the loading state for the debug output.
+     *
+     * @return (String) the state
+     */
+    public String getStatus() {
+        return "Chunk preloading \"" + world.getName() + "\": " + (total - getPendingChunks()) + "/" + total + " loaded"
+                + " | pending: " + getPendingChunks() + " | tickets: " + tickets.size()
+                + (duration >= 0 ? " | finished in " + duration + "ms" : "");
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.util.version.VersionUtil;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.generator.ChunkGenerator;
+
+import java.util.Random;
+
+/**
+ * This generator creates empty chunks on versions before 1.17, which don't have
+ * the generation steps and biome providers used by {@link VoidChunkGenerator}.
+ */
+public class LegacyVoidChunkGenerator extends ChunkGenerator {
+
+    /**
+     * This method returns the void generator for the version of the server. The
+     * {@link VoidChunkGenerator} is only loaded on 1.17+, as its classes are
+     * missing before.
+     *
+     * @return (ChunkGenerator) the void generator
+     */
+    public static ChunkGenerator create() {
+        if (VersionUtil.getVersion() >= 17) return new VoidChunkGenerator();
+
+        return new LegacyVoidChunkGenerator();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ChunkData generateChunkData(World world, Random random, int x, int z, BiomeGrid biome) {
+        for (int blockX = 0; blockX < 16; blockX++) {
+            for (int blockZ = 0; blockZ < 16; blockZ++) {
+                biome.setBiome(blockX, blockZ, Biome.THE_VOID);
+            }
+        }
+        return createChunkData(world);
+    }
+
+    @Override
+    public boolean canSpawn(World world, int x, int z) {
+        return true;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.MissileWars;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.enums.WorldMode;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class manages the arena worlds with the world mode "RESET" or "SHARED".
+ * These worlds stay loaded after a game and are reused by the next games of the
+ * same template after the changed chunks were restored. A reset world has one
+ * slot, a shared world has up to the configured number of slots.
+ */
+public class ResetWorlds {
+
+    // Pastes don't call block events, so all chunks in this radius around the paste position are marked.
+    public static final int PASTE_TOUCH_RADIUS = 32;
+
+    @Getter
+    private static final ResetWorlds instance = new ResetWorlds();
+    private final Map<String, List<ArenaSlot>> worlds = new HashMap<>();
+
+    /**
+     * This method returns an unused slot of the template and marks it as used. A
+     * slot, which is still restored after the last game, is handed out as well.
+     * Its preparation waits for the restore, so that the next game of the same
+     * tick (e.g. after a restart) doesn't need a new world. Restored slots are
+     * preferred. In a shared world, a new slot is added if all slots are in use.
+     *
+     * @param templateName (String) the name of the template world
+     * @param mode (WorldMode) the world mode of the arena
+     *
+     * @return (ArenaSlot) the slot or null, if no slot is available
+     */
+    public ArenaSlot acquire(String templateName, WorldMode mode) {
+        for (List<ArenaSlot> slots : worlds.values()) {
+            ArenaSlot first = slots.get(0);
+            if (!first.getSnapshot().getTemplateName().equals(templateName)) continue;
+            if (first.isShared() != (mode == WorldMode.SHARED)) continue;
+
+            ArenaSlot restoring = null;
+            for (ArenaSlot slot : slots) {
+                if (slot.isInUse()) continue;
+                if (slot.isRestoring()) {
+                    if (restoring == null) restoring = slot;
+                    continue;
+                }
+
+                slot.setInUse(true);
+                return slot;
+            }
+            if (restoring != null) {
+                restoring.setInUse(true);
+                return restoring;
+            }
+
+            if (mode == WorldMode.SHARED && slots.size() < Config.getSharedWorldMaxSlots() && hasEnoughSpacing(first.getSnapshot())) {
+                int index = slots.size();
+                ArenaSlot slot = new ArenaSlot(first.getSnapshot(), first.getWorld(), index, index * getSlotSpacingChunks(),
+                        getSlotSpacingChunks() << 4, false);
+                slot.setInUse(true);
+                slots.add(slot);
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This method adds a newly loaded world with the given snapshot. The first slot
+     * at the original position of the template is marked as used and returned.
+     *
+     * @param snapshot (ArenaSnapshot) the snapshot of the arena
+     * @param world (World) the loaded world
+     * @param mode (WorldMode) the world mode of the arena
+     *
+     * @return (ArenaSlot) the first slot of the world
+     */
+    public ArenaSlot register(ArenaSnapshot snapshot, World world, WorldMode mode) {
+        int cellWidth = 0;
+
+        if (mode == WorldMode.SHARED) {
+            cellWidth = getSlotSpacingChunks() << 4;
+            if (!hasEnoughSpacing(snapshot)) {
+                Logger.WARN.log("The slot spacing of shared worlds is too small for the template \"" + snapshot.getTemplateName()
+                        + "\". It must be higher than " + getMinSpacing(snapshot) + " blocks. Only one slot per world is used");
+            }
+        }
+
+        ArenaSlot slot = new ArenaSlot(snapshot, world, 0, 0, cellWidth, true);
+        slot.setInUse(true);
+
+        List<ArenaSlot> slots = new ArrayList<>();
+        slots.add(slot);
+        worlds.put(world.getName(), slots);
+
+        // Restarted games reuse the released slots, so a template only gets another
+        // world, if all of its slots are used by running games.
+        long templateWorlds = worlds.values().stream()
+                .filter(other -> other.get(0).getSnapshot().getTemplateName().equals(snapshot.getTemplateName()))
+                .count();
+        Logger.DEBUG.log("Registered reset world \"" + world.getName() + "\" (" + templateWorlds + " worlds of \""
+                + snapshot.getTemplateName() + "\")");
+        return slot;
+    }
+
+    private int getSlotSpacingChunks() {
+        return Math.max(1, Config.getSharedWorldSlotSpacing() >> 4);
+    }
+
+    private int getMinSpacing(ArenaSnapshot snapshot) {
+        // One extra chunk on each side, as the snapshot covers the full chunks of the area
+        return snapshot.getArea().getXSize() + 2 * PASTE_TOUCH_RADIUS + 32;
+    }
+
+    private boolean hasEnoughSpacing(ArenaSnapshot snapshot) {
+        return (getSlotSpacingChunks() << 4) > getMinSpacing(snapshot);
+    }
+
+    /**
+     * This method restores the slot and makes it available for the next game. The
+     * slot can be acquired again directly, its next preparation waits for the
+     * restore.
+     *
+     * @param slot (ArenaSlot) the slot
+     *
+     * @return (CompletableFuture) completes on the server thread when the slot is restored
+     */
+    public CompletableFuture<Void> release(ArenaSlot slot) {
+        slot.setInUse(false);
+
+        // No tasks can be scheduled while the plugin is disabling. The reset worlds
+        // are unloaded without saving in shutdown(), so nothing has to be restored.
+        if (!MissileWars.getInstance().isEnabled()) return CompletableFuture.completedFuture(null);
+
+        return slot.restore();
+    }
+
+    /**
+     * This method marks the chunk of the block as changed, if the block is inside
+     * an arena of a reset or shared world.
+     *
+     * @param block (Block) the changed block
+     */
+    public void markTouched(Block block) {
+        if (worlds.isEmpty()) return;
+
+        List<ArenaSlot> slots = worlds.get(block.getWorld().getName());
+        if (slots == null) return;
+
+        for (ArenaSlot slot : slots) {
+            slot.markTouched(block.getX(), block.getZ());
+        }
+    }
+
+    /**
+     * This method marks the chunks around a paste position as changed, if the
+     * position is inside an arena of a reset or shared world.
+     *
+     * @param world (World) the world of the paste
+     * @param x (int) the block x coordinate
+     * @param z (int) the block z coordinate
+     */
+    public void markPaste(World world, int x, int z) {
+        if (worlds.isEmpty()) return;
+
+        List<ArenaSlot> slots = worlds.get(world.getName());
+        if (slots == null) return;
+
+        for (ArenaSlot slot : slots) {
+            slot.markTouched(x, z, PASTE_TOUCH_RADIUS);
+        }
+    }
+
+    /**
+     * This method unloads all reset and shared worlds without saving. The world
+     * folders are deleted together with the other temp worlds.
+     */
+    public void shutdown() {
+        for (List<ArenaSlot> slots : worlds.values()) {
+            slots.forEach(ArenaSlot::cancelRestore);
+            World world = slots.get(0).getWorld();
+            Logger.DEBUG.log("Unloading reset world \"" + world.getName() + "\"");
+            Bukkit.unloadWorld(world, false);
+        }
+        worlds.clear();
+    }
+
+    /**
+     * This method returns the state of all slots for the debug output.
+     *
+     * @return (List) one line per slot
+     */
+    public List<String> getStatistics() {
+        List<String> statistics = new ArrayList<>();
+
+        for (List<ArenaSlot> slots : worlds.values()) {
+            for (ArenaSlot slot : slots) {
+                statistics.add("Reset world \"" + slot.getWorld().getName() + "\" (" + slot.getSnapshot().getTemplateName() + ")"
+                        + (slot.isShared() ? " slot " + slot.getIndex() : "") + ": " + (slot.isRestoring() ? "restoring" : slot.isInUse() ? "in use" : "ready")
+                        + " | chunks: " + slot.getSnapshot().getChunkCount()
+                        + " | last restore: " + slot.getLastRestoredBlocks() + " blocks in " + slot.getLastRestoreTime() + "ms");
+            }
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.configuration.Config;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class extracts template worlds, which are stored as a single zip archive
+ * ("&lt;template&gt;.zip") in the arenas folder. The archive is read with one
+ * sequential read, while the files are written in parallel on the I/O executor.
+ */
+public class TemplateArchive {
+
+    private static final String ARCHIVE_SUFFIX = ".zip";
+    // The maximum size of the read, but not yet written files.
+    private static final int MAX_BUFFERED_BYTES = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // Only one archive is read at the same time, so the reads stay sequential.
+    private static final ExecutorService READ_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "MissileWars-Archive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TemplateArchive() {
+    }
+
+    /**
+     * This method returns the archive of the template.
+     *
+     * @param templateName (String) the name of the template world
+     *
+     * @return (File) the archive or null, if the template is not archived
+     */
+    public static File getArchive(String templateName) {
+        File archive = new File(Config.getArenasFolder(), templateName + ARCHIVE_SUFFIX);
+        return archive.isFile() ? archive : null;
+    }
+
+    /**
+     * This method extracts the archive into the target folder. If all files of the
+     * archive are inside a folder with the template name, this folder is skipped.
+     * The "uid.dat" and "session.lock" are not extracted.
+     *
+     * @param archive (File) the template archive
+     * @param templateName (String) the name of the template world
+     * @param target (Path) the target world folder
+     * @param writeExecutor (Executor) the executor for the file writes
+     *
+     * @return (CompletableFuture) completes after the last file is written
+     */
+    public static CompletableFuture<Void> extractAsync(File archive, String templateName, Path target, Executor writeExecutor) {
+        return CompletableFuture.supplyAsync(() -> read(archive, templateName, target, writeExecutor), READ_EXECUTOR)
+                .thenCompose(writes -> CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])));
+    }
+
+    private static List<CompletableFuture<Void>> read(File archive, String templateName, Path target, Executor writeExecutor) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        Semaphore bufferedBytes = new Semaphore(MAX_BUFFERED_BYTES);
+        Path root = target.toAbsolutePath().normalize();
+        String prefix = templateName + "/";
+
+        try (ZipInputStream input = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive.toPath()), BUFFER_SIZE))) {
+            ZipEntry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                String name = entry.getName().replace('\\', '/');
+                if (name.startsWith(prefix)) name = name.substring(prefix.length());
+                if (name.isEmpty()) continue;
+
+                Path path = root.resolve(name).normalize();
+                if (!path.startsWith(root)) throw new IOException("Invalid entry \"" + entry.getName() + "\" in " + archive.getName());
+
+                if (entry.isDirectory()) {
+                    Files.createDirectories(path);
+                    continue;
+                }
+
+                String fileName = path.getFileName().toString();
+                if (fileName.equals("uid.dat") || fileName.equals("session.lock")) continue;
+
+                byte[] data = input.readAllBytes();
+                int permits = Math.min(data.length, MAX_BUFFERED_BYTES);
+                bufferedBytes.acquireUninterruptibly(permits);
+
+                writes.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        Files.createDirectories(path.getParent());
+                        Files.write(path, data);
+                    } catch (IOException exception) {
+                        throw new CompletionException(exception);
+                    } finally {
+                        bufferedBytes.release(permits);
+                    }
+                }, writeExecutor));
+            }
+        } catch (IOException exception) {
+            throw new CompletionException(exception);
+        }
+
+        return writes;
+    }
+}
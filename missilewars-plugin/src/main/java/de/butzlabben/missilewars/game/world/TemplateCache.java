@@ -0,0 +1,282 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import lombok.Getter;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps the files of frequently used template worlds in off-heap
+ * memory. New game worlds of a cached template are written straight from these
+ * buffers, so the template is read from the disk only once. The cache has a
+ * memory cap and evicts the least recently used templates. A template is loaded
+ * again, when the modification time of its folder changes.
+ */
+public class TemplateCache {
+
+    @Getter
+    private static final TemplateCache instance = new TemplateCache();
+    // Access ordered, so that the first entry is the least recently used template.
+    private final Map<String, CachedTemplate> templates = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> loading = ConcurrentHashMap.newKeySet();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private long usedBytes;
+
+    /**
+     * This method loads the template into the cache in the background, if it is
+     * not cached yet or has changed since.
+     *
+     * @param templateName (String) the name of the template world
+     */
+    public void preload(String templateName) {
+        if (!Config.isTemplateCacheEnabled()) return;
+        if (get(templateName) != null) return;
+        if (!loading.add(templateName)) return;
+
+        CompletableFuture.runAsync(() -> load(templateName), TemplateCopier.getExecutor()).whenComplete((result, throwable) -> {
+            loading.remove(templateName);
+            if (throwable == null) return;
+
+            Logger.WARN.log("Could not cache the template world \"" + templateName + "\"");
+            throwable.printStackTrace();
+        });
+    }
+
+    /**
+     * This method writes the cached template into the target folder. The "uid.dat"
+     * and "session.lock" are never part of the cache.
+     *
+     * @param templateName (String) the name of the template world
+     * @param target (Path) the target world folder
+     * @param ioExecutor (ExecutorService) the executor for the file writes
+     *
+     * @return (CompletableFuture) the write of all files or null, if the template is not cached
+     */
+    public CompletableFuture<Void> writeAsync(String templateName, Path target, ExecutorService ioExecutor) {
+        if (!Config.isTemplateCacheEnabled()) return null;
+
+        CachedTemplate template = get(templateName);
+        if (template == null) {
+            misses.incrementAndGet();
+            preload(templateName);
+            return null;
+        }
+        hits.incrementAndGet();
+
+        return CompletableFuture.runAsync(() -> {
+            try {
+                for (String directory : template.directories) {
+                    Files.createDirectories(target.resolve(directory));
+                }
+            } catch (IOException exception) {
+                throw new CompletionException(exception);
+            }
+        }, ioExecutor).thenCompose(ignored -> {
+            CompletableFuture<?>[] writes = template.files.entrySet().stream()
+                    .map(entry -> CompletableFuture.runAsync(() -> writeFile(entry.getValue(), target.resolve(entry.getKey())), ioExecutor))
+                    .toArray(CompletableFuture[]::new);
+            return CompletableFuture.allOf(writes);
+        });
+    }
+
+    /**
+     * This method returns the cached template, if it's still up to date.
+     */
+    private synchronized CachedTemplate get(String templateName) {
+        CachedTemplate template = templates.get(templateName);
+        if (template == null) return null;
+
+        File folder = TemplateCompiler.getTemplateFolder(templateName);
+        if (folder.equals(template.folder) && getModificationTime(folder) == template.modificationTime) return template;
+
+        Logger.DEBUG.log("The template world \"" + templateName + "\" has changed. Removing it from the cache");
+        remove(templateName);
+        return null;
+    }
+
+    private void load(String templateName) {
+        File folder = TemplateCompiler.getTemplateFolder(templateName);
+        long maxBytes = getMaxBytes();
+        long size = FileUtils.sizeOfDirectory(folder);
+        if (size > maxBytes) {
+            Logger.DEBUG.log("The template world \"" + templateName + "\" (" + FileUtils.byteCountToDisplaySize(size)
+                    + ") is larger than the template cache");
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        CachedTemplate template = new CachedTemplate(folder, getModificationTime(folder));
+        Path source = folder.toPath();
+
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    template.directories.add(source.relativize(dir).toString());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    String fileName = file.getFileName().toString();
+                    if (fileName.equals("uid.dat") || fileName.equals("session.lock")) return FileVisitResult.CONTINUE;
+
+                    template.files.put(source.relativize(file).toString(), readFile(file));
+                    template.size += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+            throw new CompletionException(exception);
+        }
+
+        synchronized (this) {
+            remove(templateName);
+            templates.put(templateName, template);
+            usedBytes += template.size;
+            evict(maxBytes);
+        }
+        Logger.DEBUG.log("Cached template world \"" + templateName + "\" (" + FileUtils.byteCountToDisplaySize(template.size)
+                + ") in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * This method removes the least recently used templates until the cache fits
+     * into the memory cap again.
+     */
+    private void evict(long maxBytes) {
+        Iterator<Map.Entry<String, CachedTemplate>> iterator = templates.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, CachedTemplate> entry = iterator.next();
+            iterator.remove();
+            usedBytes -= entry.getValue().size;
+            evictions.incrementAndGet();
+            Logger.DEBUG.log("Evicted template world \"" + entry.getKey() + "\" from the cache");
+        }
+    }
+
+    private void remove(String templateName) {
+        CachedTemplate template = templates.remove(templateName);
+        if (template != null) usedBytes -= template.size;
+    }
+
+    /**
+     * This method removes all templates. The off-heap memory is released, when the
+     * buffers are collected.
+     */
+    public synchronized void clear() {
+        templates.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * This method returns the metrics of the cache for the debug output.
+     *
+     * @return (List) the lines of the statistics
+     */
+    public synchronized List<String> getStatistics() {
+        List<String> statistics = new ArrayList<>();
+        statistics.add("Template cache: " + templates.size() + " templates"
+                + " | memory: " + FileUtils.byteCountToDisplaySize(usedBytes) + "/" + FileUtils.byteCountToDisplaySize(getMaxBytes())
+                + " | hits: " + hits.get() + " | misses: " + misses.get() + " | evictions: " + evictions.get());
+        return statistics;
+    }
+
+    private static ByteBuffer readFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private static void writeFile(ByteBuffer buffer, Path target) {
+        // Each write uses its own view of the buffer, so parallel copies don't share the position.
+        ByteBuffer view = buffer.duplicate();
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (view.hasRemaining()) {
+                channel.write(view);
+            }
+        } catch (IOException exception) {
+            throw new CompletionException(exception);
+        }
+    }
+
+    /**
+     * This method returns the latest modification time of the template folder and
+     * its direct sub folders (e.g. "region"), as added or replaced files change them.
+     */
+    private static long getModificationTime(File folder) {
+        long modificationTime = folder.lastModified();
+
+        File[] children = folder.listFiles(File::isDirectory);
+        if (children == null) return modificationTime;
+        for (File child : children) {
+            modificationTime = Math.max(modificationTime, child.lastModified());
+        }
+        return modificationTime;
+    }
+
+    private static long getMaxBytes() {
+        return Config.getTemplateCacheMaxMemory() * 1024L * 1024L;
+    }
+
+    private static class CachedTemplate {
+
+        private final File folder;
+        private final long modificationTime;
+        private final List<String> directories = new ArrayList<>();
+        private final Map<String, ByteBuffer> files = new LinkedHashMap<>();
+        private long size;
+
+        private CachedTemplate(File folder, long modificationTime) {
+            this.folder = folder;
+            this.modificationTime = modificationTime;
+        }
+    }
+}
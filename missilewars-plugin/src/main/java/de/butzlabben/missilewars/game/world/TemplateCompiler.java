@@ -0,0 +1,328 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.configuration.arena.AreaConfiguration;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class creates a reduced copy of a template world, which only contains the
+ * data the arena needs. The compiled template is saved next to the original
+ * template and used for all world copies.
+ * <p>
+ * Only the region files intersecting the arena areas (plus a margin) are kept.
+ * Optionally ("prune_chunks", off by default), all other chunks inside these
+ * region files are removed as well. This also removes builds outside the areas
+ * plus the margin, e.g. a lobby in the template world.
+ * Player data, statistics, advancements, POI data and the nether and end
+ * dimensions are not copied.
+ */
+public class TemplateCompiler {
+
+    private static final String COMPILED_SUFFIX = ".compiled";
+    private static final String MARKER_FILE = ".mw-compiled";
+    private static final List<String> SKIPPED_FILES = Arrays.asList("playerdata", "stats", "advancements", "poi",
+            "DIM-1", "DIM1", "uid.dat", "session.lock", MARKER_FILE);
+    private static final List<String> REGION_FOLDERS = Arrays.asList("region", "entities");
+    private static final Pattern REGION_FILE = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    // Oversized chunks are saved in their own files next to the region files.
+    private static final Pattern EXTERNAL_CHUNK_FILE = Pattern.compile("c\\.(-?\\d+)\\.(-?\\d+)\\.mcc");
+
+    private static final int SECTOR_SIZE = 4096;
+    private static final int HEADER_SIZE = 2 * SECTOR_SIZE;
+
+    // Templates, which are compiled at the moment. Their copies use the original template until then.
+    private static final Set<String> compiling = ConcurrentHashMap.newKeySet();
+
+    private TemplateCompiler() {
+    }
+
+    /**
+     * This method returns the template folder used for copies of the template. This
+     * is the compiled template, if it exists, or the original template otherwise.
+     *
+     * @param templateName (String) the name of the template world
+     *
+     * @return (File) the template folder
+     */
+    public static File getTemplateFolder(String templateName) {
+        File compiled = getCompiledFolder(templateName);
+        if (!compiling.contains(templateName) && new File(compiled, MARKER_FILE).isFile()) return compiled;
+
+        return new File(Config.getArenasFolder(), templateName);
+    }
+
+    private static File getCompiledFolder(String templateName) {
+        return new File(Config.getArenasFolder(), templateName + COMPILED_SUFFIX);
+    }
+
+    /**
+     * This method compiles the templates in the background on the I/O executor of
+     * the template copies, as the region files are read and written.
+     *
+     * @param templateAreas (Map) the areas of all arenas per template name
+     *
+     * @return (CompletableFuture) completes after the last template is compiled
+     */
+    public static CompletableFuture<Void> compileAll(Map<String, List<AreaConfiguration>> templateAreas) {
+        compiling.addAll(templateAreas.keySet());
+
+        return CompletableFuture.runAsync(() -> templateAreas.forEach((templateName, areas) -> {
+            try {
+                compile(templateName, areas);
+            } finally {
+                compiling.remove(templateName);
+            }
+        }), TemplateCopier.getExecutor());
+    }
+
+    /**
+     * This method compiles the template for the given areas. Nothing is done, if the
+     * compiled template is up to date.
+     *
+     * @param templateName (String) the name of the template world
+     * @param areas (List) the areas of all arenas using this template
+     */
+    public static void compile(String templateName, List<AreaConfiguration> areas) {
+        File source = new File(Config.getArenasFolder(), templateName);
+        File target = getCompiledFolder(templateName);
+
+        // Archived templates are used directly. They should contain the pruned world already.
+        if ((TemplateArchive.getArchive(templateName) != null) || !source.isDirectory()) return;
+
+        if (!Config.isTemplateCompilerEnabled() || areas.isEmpty()) {
+            FileUtils.deleteQuietly(target);
+            return;
+        }
+
+        int margin = Math.max(0, Config.getTemplateCompilerMargin());
+        int minX = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+        for (AreaConfiguration area : areas) {
+            minX = Math.min(minX, Math.min(area.getMinX(), area.getMaxX()) - margin);
+            minZ = Math.min(minZ, Math.min(area.getMinZ(), area.getMaxZ()) - margin);
+            maxX = Math.max(maxX, Math.max(area.getMinX(), area.getMaxX()) + margin);
+            maxZ = Math.max(maxZ, Math.max(area.getMinZ(), area.getMaxZ()) + margin);
+        }
+        Bounds bounds = new Bounds(minX >> 4, minZ >> 4, maxX >> 4, maxZ >> 4);
+
+        String fingerprint = getFingerprint(source, bounds);
+        File marker = new File(target, MARKER_FILE);
+        try {
+            if (marker.isFile() && new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8).equals(fingerprint)) return;
+        } catch (IOException ignored) {
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            FileUtils.deleteDirectory(target);
+            copyFolder(source, target, bounds);
+            Files.write(marker.toPath(), fingerprint.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException exception) {
+            Logger.ERROR.log("Could not compile the template world \"" + templateName + "\". Using the original template");
+            exception.printStackTrace();
+            FileUtils.deleteQuietly(target);
+            return;
+        }
+
+        Logger.NORMAL.log("Compiled the template world \"" + templateName + "\" in " + (System.currentTimeMillis() - start) + "ms ("
+                + FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(source)) + " -> "
+                + FileUtils.byteCountToDisplaySize(FileUtils.sizeOfDirectory(target)) + ")");
+    }
+
+    /**
+     * This method creates a fingerprint of the source template and the compile
+     * settings. The template is compiled again, if it changes.
+     */
+    private static String getFingerprint(File source, Bounds bounds) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(bounds).append(';').append(Config.isTemplateCompilerPruneChunks());
+
+        File[] files = source.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                appendFingerprint(builder, file);
+                if (REGION_FOLDERS.contains(file.getName()) && file.isDirectory()) {
+                    File[] regions = file.listFiles();
+                    if (regions == null) continue;
+                    Arrays.sort(regions);
+                    for (File region : regions) {
+                        appendFingerprint(builder, region);
+                    }
+                }
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private static void appendFingerprint(StringBuilder builder, File file) {
+        builder.append(';').append(file.getName()).append(':').append(file.length()).append(':').append(file.lastModified());
+    }
+
+    private static void copyFolder(File source, File target, Bounds bounds) throws IOException {
+        File[] files = source.listFiles();
+        if (files == null) throw new IOException("Could not read the template folder " + source.getPath());
+
+        target.mkdirs();
+        for (File file : files) {
+            if (SKIPPED_FILES.contains(file.getName())) continue;
+
+            File targetFile = new File(target, file.getName());
+            if (file.isDirectory() && REGION_FOLDERS.contains(file.getName())) {
+                copyRegions(file, targetFile, bounds);
+            } else if (file.isDirectory()) {
+                FileUtils.copyDirectory(file, targetFile);
+            } else {
+                Files.copy(file.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void copyRegions(File source, File target, Bounds bounds) throws IOException {
+        File[] files = source.listFiles();
+        if (files == null) return;
+
+        target.mkdirs();
+        for (File file : files) {
+            Matcher chunkMatcher = EXTERNAL_CHUNK_FILE.matcher(file.getName());
+            if (chunkMatcher.matches()) {
+                if (bounds.containsChunk(Integer.parseInt(chunkMatcher.group(1)), Integer.parseInt(chunkMatcher.group(2)))) {
+                    Files.copy(file.toPath(), new File(target, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+                continue;
+            }
+
+            Matcher matcher = REGION_FILE.matcher(file.getName());
+            if (!matcher.matches()) continue;
+
+            int regionX = Integer.parseInt(matcher.group(1));
+            int regionZ = Integer.parseInt(matcher.group(2));
+            if (!bounds.intersectsRegion(regionX, regionZ)) continue;
+
+            File targetFile = new File(target, file.getName());
+            if (Config.isTemplateCompilerPruneChunks() && !bounds.containsRegion(regionX, regionZ)) {
+                pruneRegion(file, targetFile, regionX, regionZ, bounds);
+            } else {
+                Files.copy(file.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * This method writes a new region file, which only contains the chunks inside
+     * the bounds. The chunks are written one after another without gaps.
+     * <p>
+     * A region file starts with a table of 1024 chunk locations (offset and size in
+     * sectors of 4 KiB) and a table of 1024 timestamps, followed by the chunk data.
+     */
+    private static void pruneRegion(File source, File target, int regionX, int regionZ, Bounds bounds) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(source, "r");
+             FileChannel output = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            if (input.length() < HEADER_SIZE) return;
+
+            byte[] header = new byte[HEADER_SIZE];
+            input.readFully(header);
+            ByteBuffer sourceHeader = ByteBuffer.wrap(header);
+            ByteBuffer targetHeader = ByteBuffer.allocate(HEADER_SIZE);
+
+            int nextSector = HEADER_SIZE / SECTOR_SIZE;
+            for (int index = 0; index < 1024; index++) {
+                int location = sourceHeader.getInt(index * 4);
+                int offset = location >>> 8;
+                int sectors = location & 0xFF;
+                if (offset == 0 || sectors == 0) continue;
+
+                int chunkX = (regionX << 5) + (index & 31);
+                int chunkZ = (regionZ << 5) + (index >> 5);
+                if (!bounds.containsChunk(chunkX, chunkZ)) continue;
+
+                long position = (long) offset * SECTOR_SIZE;
+                if (position >= input.length()) continue;
+
+                byte[] data = new byte[sectors * SECTOR_SIZE];
+                input.seek(position);
+                input.readFully(data, 0, (int) Math.min(data.length, input.length() - position));
+                output.write(ByteBuffer.wrap(data), (long) nextSector * SECTOR_SIZE);
+
+                targetHeader.putInt(index * 4, (nextSector << 8) | sectors);
+                targetHeader.putInt(SECTOR_SIZE + index * 4, sourceHeader.getInt(SECTOR_SIZE + index * 4));
+                nextSector += sectors;
+            }
+
+            output.write(targetHeader, 0);
+        }
+    }
+
+    /**
+     * The horizontal bounds of the compiled template in chunk coordinates.
+     */
+    private static class Bounds {
+
+        private final int minChunkX, minChunkZ, maxChunkX, maxChunkZ;
+
+        private Bounds(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+            this.minChunkX = minChunkX;
+            this.minChunkZ = minChunkZ;
+            this.maxChunkX = maxChunkX;
+            this.maxChunkZ = maxChunkZ;
+        }
+
+        private boolean containsChunk(int chunkX, int chunkZ) {
+            return chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ;
+        }
+
+        private boolean intersectsRegion(int regionX, int regionZ) {
+            return (regionX << 5) + 31 >= minChunkX && regionX << 5 <= maxChunkX
+                    && (regionZ << 5) + 31 >= minChunkZ && regionZ << 5 <= maxChunkZ;
+        }
+
+        private boolean containsRegion(int regionX, int regionZ) {
+            return regionX << 5 >= minChunkX && (regionX << 5) + 31 <= maxChunkX
+                    && regionZ << 5 >= minChunkZ && (regionZ << 5) + 31 <= maxChunkZ;
+        }
+
+        @Override
+        public String toString() {
+            return minChunkX + "," + minChunkZ + "," + maxChunkX + "," + maxChunkZ;
+        }
+    }
+}
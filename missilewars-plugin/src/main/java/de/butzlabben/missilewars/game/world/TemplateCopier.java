@@ -0,0 +1,208 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class copies template worlds into new game world folders. The template is
+ * walked with NIO and all files are copied in parallel on a bounded I/O executor,
+ * so the server thread never waits for the disk.
+ */
+public class TemplateCopier {
+
+    // Smaller files are copied directly, as starting a reflink process costs more than copying them.
+    private static final long REFLINK_MIN_SIZE = 64 * 1024;
+
+    private static ExecutorService executor;
+    private static volatile Boolean reflinkSupported;
+
+    private TemplateCopier() {
+    }
+
+    /**
+     * This method returns the bounded executor for the world file I/O. It is
+     * created with the configured amount of threads on the first usage.
+     *
+     * @return (ExecutorService) the I/O executor
+     */
+    public static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(Math.max(1, Config.getWorldCopyThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "MissileWars-IO-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * This method stops the I/O executor. Running copies are interrupted.
+     */
+    public static synchronized void shutdown() {
+        if (executor == null) return;
+
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * This method reserves a new, unused world folder for the given template. The
+     * folder is created directly, so that parallel callers (e.g. the world pool
+     * refill) never get the same name.
+     *
+     * @param templateName (String) the name of the template world
+     *
+     * @return (File) the reserved world folder inside the world container
+     */
+    public static synchronized File reserveWorldFolder(String templateName) {
+        String worldNameTemplate = "mw-" + templateName;
+        int i = 0;
+        File file;
+        do {
+            file = new File(Bukkit.getWorldContainer(), worldNameTemplate + "-" + i);
+            i++;
+        } while (file.exists() || file.isDirectory());
+
+        file.mkdirs();
+        return file;
+    }
+
+    /**
+     * This method copies the template world asynchronously into the target folder.
+     * The folder structure is created first, then all files are copied in parallel.
+     * The "uid.dat" and "session.lock" are not copied, so that Bukkit accepts the
+     * copy as a new world. Archived templates are extracted instead and cached
+     * templates are written from the memory.
+     *
+     * @param templateName (String) the name of the template world
+     * @param target (File) the target world folder
+     *
+     * @return (CompletableFuture) completes after the last file is copied
+     */
+    public static CompletableFuture<Void> copyAsync(String templateName, File target) {
+        Path destination = target.toPath();
+        ExecutorService ioExecutor = getExecutor();
+
+        File archive = TemplateArchive.getArchive(templateName);
+        if (archive != null) return TemplateArchive.extractAsync(archive, templateName, destination, ioExecutor);
+
+        CompletableFuture<Void> cached = TemplateCache.getInstance().writeAsync(templateName, destination, ioExecutor);
+        if (cached != null) return cached;
+
+        Path source = TemplateCompiler.getTemplateFolder(templateName).toPath();
+
+        return CompletableFuture.supplyAsync(() -> walkTemplate(source, destination), ioExecutor)
+                .thenCompose(files -> {
+                    CompletableFuture<?>[] copies = files.stream()
+                            .map(file -> CompletableFuture.runAsync(() -> copyFile(file, destination.resolve(source.relativize(file))), ioExecutor))
+                            .toArray(CompletableFuture[]::new);
+                    return CompletableFuture.allOf(copies);
+                });
+    }
+
+    /**
+     * This method walks through the template, creates all directories at the
+     * target and collects the files to copy.
+     */
+    private static List<Path> walkTemplate(Path source, Path destination) {
+        List<Path> files = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    Files.createDirectories(destination.resolve(source.relativize(dir)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String fileName = file.getFileName().toString();
+                    if (fileName.equals("uid.dat") || fileName.equals("session.lock")) return FileVisitResult.CONTINUE;
+
+                    files.add(file);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException exception) {
+            throw new CompletionException(exception);
+        }
+
+        return files;
+    }
+
+    private static void copyFile(Path source, Path target) {
+        try {
+            if (Config.isWorldCopyReflink() && Files.size(source) >= REFLINK_MIN_SIZE && reflink(source, target)) return;
+
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException exception) {
+            throw new CompletionException(exception);
+        }
+    }
+
+    /**
+     * This method tries to create a copy-on-write clone (reflink) of the file. This
+     * is supported by file systems like Btrfs, XFS or APFS and takes no time and disk
+     * space, independent of the file size. Whether the file system supports it is
+     * checked with the first large file.
+     *
+     * @return true, if the reflink was created
+     */
+    private static boolean reflink(Path source, Path target) {
+        if (Boolean.FALSE.equals(reflinkSupported)) return false;
+
+        boolean success;
+        try {
+            Process process = new ProcessBuilder("cp", "--reflink=always", source.toString(), target.toString())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            success = process.waitFor() == 0;
+        } catch (IOException exception) {
+            success = false;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        if (reflinkSupported == null) {
+            reflinkSupported = success;
+            Logger.DEBUG.log("Copy-on-write copies of template worlds are " + (success ? "" : "not ") + "supported by the file system");
+        }
+        return success;
+    }
+}
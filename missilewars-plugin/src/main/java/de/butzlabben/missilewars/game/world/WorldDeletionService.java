@@ -0,0 +1,194 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.Config;
+import lombok.Getter;
+import org.apache.commons.io.FileUtils;
+import org.bukkit.Bukkit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class deletes old world folders in the background. A folder is first moved
+ * into a trash folder, which is a single rename on the same file system. So the
+ * world name can be used again directly. The trash is deleted afterwards on a
+ * limited number of low priority threads, so that the disk I/O of the running
+ * worlds is not slowed down too much.
+ */
+public class WorldDeletionService {
+
+    private static final String TRASH_FOLDER = ".mw-trash";
+    private static final long RETRY_DELAY = 5;
+
+    @Getter
+    private static final WorldDeletionService instance = new WorldDeletionService();
+    private final AtomicInteger trashCount = new AtomicInteger();
+    private final AtomicInteger pendingFolders = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final AtomicLong inProgressBytes = new AtomicLong();
+    private final AtomicLong deletedBytes = new AtomicLong();
+    private final AtomicInteger failedFolders = new AtomicInteger();
+    private ScheduledExecutorService executor;
+
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = new ScheduledThreadPoolExecutor(Math.max(1, Config.getWorldDeleteThreads()), runnable -> {
+                Thread thread = new Thread(runnable, "MissileWars-Delete-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+        return executor;
+    }
+
+    private File getTrashFolder() {
+        return new File(Bukkit.getWorldContainer(), TRASH_FOLDER);
+    }
+
+    /**
+     * This method moves the folder into the trash and deletes it in the background.
+     * If the folder can't be moved, it is deleted at its current place.
+     *
+     * @param folder (File) the world folder to delete
+     */
+    public void delete(File folder) {
+        if (!folder.exists()) return;
+
+        File trash = getTrashFolder();
+        trash.mkdirs();
+        File target = new File(trash, folder.getName() + "-" + System.nanoTime() + "-" + trashCount.incrementAndGet());
+
+        try {
+            Files.move(folder.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exception) {
+            Logger.DEBUG.log("Could not move \"" + folder.getName() + "\" into the trash. Deleting it at its place");
+            target = folder;
+        }
+
+        submit(target);
+    }
+
+    /**
+     * This method moves all temp worlds of the last server session into the trash
+     * and deletes the remaining trash content in the background.
+     */
+    public void deleteTempWorlds() {
+        // The trash is listed first, as the temp worlds moved into it below are submitted by delete().
+        File[] trash = getTrashFolder().listFiles();
+        if (trash != null) {
+            for (File dir : trash) {
+                submit(dir);
+            }
+        }
+
+        File[] dirs = Bukkit.getWorldContainer().listFiles();
+        if (dirs == null) return;
+
+        for (File dir : dirs) {
+            if (dir.getName().startsWith("mw-")) delete(dir);
+        }
+    }
+
+    /**
+     * This method queues the folder for the deletion. Its size is calculated once
+     * on a delete thread, as walking the folder is too slow for the server thread,
+     * and counted as queued until a thread starts to delete it.
+     */
+    private void submit(File folder) {
+        pendingFolders.incrementAndGet();
+        getExecutor().execute(() -> {
+            long size = 0;
+            try {
+                size = FileUtils.sizeOf(folder);
+            } catch (Exception ignored) {
+            }
+
+            schedule(folder, 0, size);
+        });
+    }
+
+    private void schedule(File folder, int attempt, long size) {
+        queuedBytes.addAndGet(size);
+
+        long delay = attempt == 0 ? 0 : RETRY_DELAY;
+        getExecutor().schedule(() -> deleteNow(folder, attempt, size), delay, TimeUnit.SECONDS);
+    }
+
+    private void deleteNow(File folder, int attempt, long size) {
+        queuedBytes.addAndGet(-size);
+        inProgressBytes.addAndGet(size);
+
+        try {
+            if (folder.exists()) FileUtils.forceDelete(folder);
+            deletedBytes.addAndGet(size);
+            pendingFolders.decrementAndGet();
+        } catch (IOException exception) {
+            if (attempt < Config.getWorldDeleteRetries()) {
+                Logger.DEBUG.log("Could not delete \"" + folder.getName() + "\". Trying again in " + RETRY_DELAY + " seconds");
+                schedule(folder, attempt + 1, size);
+            } else {
+                Logger.WARN.log("Could not delete old world \"" + folder.getName() + "\": " + exception.getMessage());
+                failedFolders.incrementAndGet();
+                pendingFolders.decrementAndGet();
+            }
+        } finally {
+            inProgressBytes.addAndGet(-size);
+        }
+    }
+
+    /**
+     * This method stops the running deletions. The remaining trash is deleted
+     * with the next server start.
+     */
+    public synchronized void shutdown() {
+        if (executor == null) return;
+
+        executor.shutdownNow();
+        executor = null;
+    }
+
+    /**
+     * This method returns the state of the deletion queue for the debug output.
+     *
+     * @return (List) the debug lines
+     */
+    public List<String> getStatistics() {
+        List<String> statistics = new ArrayList<>();
+        statistics.add("World deletion: " + pendingFolders.get() + " pending folders"
+                + " | queued: " + FileUtils.byteCountToDisplaySize(queuedBytes.get())
+                + " | in progress: " + FileUtils.byteCountToDisplaySize(inProgressBytes.get())
+                + " | deleted: " + FileUtils.byteCountToDisplaySize(deletedBytes.get())
+                + " | failed: " + failedFolders.get());
+        return statistics;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.game.world;
+
+import de.butzlabben.missilewars.Logger;
+import de.butzlabben.missilewars.configuration.arena.Arena;
+import lombok.Getter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class keeps a number of ready copies of each arena template world on the
+ * disk. A game world can lease such a copy instead of copying the template at the
+ * moment the game starts. Leased copies are replaced in the background.
+ */
+public class WorldPool {
+
+    @Getter
+    private static final WorldPool instance = new WorldPool();
+    private final Map<String, TemplatePool> pools = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    /**
+     * This method registers the template world of the arena. The pool size of a
+     * template is the highest size of all arenas using this template.
+     *
+     * @param arena (Arena) the arena configuration
+     */
+    public void register(Arena arena) {
+        int size = Math.max(0, arena.getWorldPoolSize());
+        TemplatePool pool = pools.computeIfAbsent(arena.getTemplateWorld(), TemplatePool::new);
+        pool.size = Math.max(pool.size, size);
+
+        refill(pool);
+    }
+
+    /**
+     * This method returns the name of a ready copy of the template world. The copy
+     * is removed from the pool and a refill is started.
+     *
+     * @param templateName (String) the name of the template world
+     *
+     * @return (String) the world name of the copy or null, if no copy is ready
+     */
+    public String lease(String templateName) {
+        TemplatePool pool = pools.get(templateName);
+        if (pool == null) return null;
+
+        String worldName = pool.ready.poll();
+        if (worldName == null) {
+            pool.misses.incrementAndGet();
+        } else {
+            pool.hits.incrementAndGet();
+        }
+
+        refill(pool);
+        return worldName;
+    }
+
+    private void refill(TemplatePool pool) {
+        if (!enabled) return;
+        if (pool.ready.size() >= pool.size) return;
+        if (!pool.refilling.compareAndSet(false, true)) return;
+
+        refillNext(pool);
+    }
+
+    /**
+     * This method prepares one copy after another until the pool is full.
+     */
+    private void refillNext(TemplatePool pool) {
+        if (!enabled || pool.ready.size() >= pool.size) {
+            pool.refilling.set(false);
+            // A lease between the check and the reset couldn't start a refill, so the pool is checked again.
+            if (enabled && pool.ready.size() < pool.size && pool.refilling.compareAndSet(false, true)) {
+                refillNext(pool);
+            }
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        File folder = TemplateCopier.reserveWorldFolder(pool.templateName);
+
+        TemplateCopier.copyAsync(pool.templateName, folder).whenComplete((result, throwable) -> {
+            if (throwable != null) {
+                Logger.ERROR.log("Could not prepare a copy of the template world \"" + pool.templateName + "\"");
+                throwable.printStackTrace();
+                WorldDeletionService.getInstance().delete(folder);
+                pool.refilling.set(false);
+                return;
+            }
+
+            pool.lastRefillTime.set(System.currentTimeMillis() - start);
+            pool.totalRefillTime.addAndGet(pool.lastRefillTime.get());
+            pool.refills.incrementAndGet();
+            pool.ready.add(folder.getName());
+            Logger.DEBUG.log("Prepared world copy \"" + folder.getName() + "\" in " + pool.lastRefillTime.get() + "ms");
+
+            refillNext(pool);
+        });
+    }
+
+    /**
+     * This method stops all further refills. The remaining copies are deleted
+     * together with the other temp worlds.
+     */
+    public void shutdown() {
+        enabled = false;
+        pools.clear();
+        TemplateCopier.shutdown();
+    }
+
+    /**
+     * This method returns the metrics of all template pools for the debug output.
+     *
+     * @return (List) one line per template pool
+     */
+    public List<String> getStatistics() {
+        List<String> statistics = new ArrayList<>();
+
+        for (TemplatePool pool : pools.values()) {
+            long refills = pool.refills.get();
+            long averageRefillTime = refills == 0 ? 0 : pool.totalRefillTime.get() / refills;
+
+            statistics.add("World pool \"" + pool.templateName + "\": " + pool.ready.size() + "/" + pool.size + " ready"
+                    + " | hits: " + pool.hits.get() + " | misses: " + pool.misses.get()
+                    + " | refills: " + refills + " (last " + pool.lastRefillTime.get() + "ms, avg " + averageRefillTime + "ms)");
+        }
+
+        return statistics;
+    }
+
+    private static class TemplatePool {
+
+        private final String templateName;
+        private final Queue<String> ready = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean refilling = new AtomicBoolean(false);
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong refills = new AtomicLong();
+        private final AtomicLong lastRefillTime = new AtomicLong();
+        private final AtomicLong totalRefillTime = new AtomicLong();
+        private volatile int size;
+
+        private TemplatePool(String templateName) {
+            this.templateName = templateName;
+        }
+    }
+}
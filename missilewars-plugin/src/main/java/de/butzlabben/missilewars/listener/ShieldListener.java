@@ -48,8 +48,8 @@ public class ShieldListener implements Listener {
 
         Bukkit.getScheduler().runTaskLater(MissileWars.getInstance(), () -> {
             if (!ball.isDead()) {
-                game.spawnShield(player, ball);
-                player.playSound(player.getLocation(), Sound.ENTITY_ENDER_DRAGON_FLAP, 1, 1);
+                game.spawnShield(player, ball)
+                        .thenRun(() -> player.playSound(player.getLocation(), Sound.ENTITY_ENDER_DRAGON_FLAP, 1, 1));
             }
             HandlerList.unregisterAll(this);
         }, game.getArena().getShieldConfiguration().getFlyTime());
@@ -39,7 +39,7 @@ public abstract class GameBoundListener implements Listener {
     }
 
     public boolean isInGameWorld(Location location) {
-        return game.getGameWorld().isWorld(location.getWorld());
+        return game.isInGameWorld(location);
     }
 
     public Game getGame() {
@@ -43,10 +43,13 @@ import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Projectile;
 import org.bukkit.entity.Snowball;
+import org.bukkit.entity.TNTPrimed;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.Action;
 import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
 import org.bukkit.event.entity.*;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryOpenEvent;
@@ -71,16 +74,41 @@ public class GameListener extends GameBoundListener {
     public void onExplode(EntityExplodeEvent event) {
         if (!isInGameWorld(event.getLocation())) return;
 
+        if (event.getEntity() instanceof TNTPrimed) getGame().getActiveMissiles().onExplosion(event.getLocation());
+
         if (event.getEntity().getType() != EntityType.FIREBALL) return;
         if (getGame().getArena().getFireballConfiguration().isDestroysPortal()) return;
 
         event.blockList().removeIf(b -> b.getType() == Material.NETHER_PORTAL);
     }
 
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onPistonExtendBudget(BlockPistonExtendEvent event) {
+        if (!isInGameWorld(event.getBlock().getLocation())) return;
+
+        if (getGame().getActivityGovernor().onPistonExtend(event.getBlock(), event.getDirection(), event.getBlocks())) event.setCancelled(true);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        if (!isInGameWorld(event.getBlock().getLocation())) return;
+
+        getGame().getActiveMissiles().onPiston(event.getBlock(), event.getBlocks());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        if (!isInGameWorld(event.getBlock().getLocation())) return;
+
+        getGame().getActivityGovernor().onPistonRetract();
+        getGame().getActiveMissiles().onPiston(event.getBlock(), event.getBlocks());
+    }
+
     @EventHandler
     public void onBlockPhysics(BlockPhysicsEvent event) {
         if (!isInGameWorld(event.getBlock().getLocation())) return;
 
+        getGame().getActivityGovernor().onPhysics();
         if (event.getChangedType() != Material.NETHER_PORTAL) return;
 
         Location location = event.getBlock().getLocation();
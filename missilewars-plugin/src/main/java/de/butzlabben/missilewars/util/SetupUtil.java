@@ -21,6 +21,7 @@ package de.butzlabben.missilewars.util;
 import de.butzlabben.missilewars.Logger;
 import de.butzlabben.missilewars.MissileWars;
 import de.butzlabben.missilewars.configuration.Config;
+import de.butzlabben.missilewars.game.world.TemplateArchive;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 
@@ -95,7 +96,7 @@ public class SetupUtil {
     public static void checkMap(String worldName) {
         File arenasFolder = new File(Config.getArenasFolder());
         File file = new File(arenasFolder, worldName);
-        if (!file.isDirectory()) {
+        if (!file.isDirectory() && (TemplateArchive.getArchive(worldName) == null)) {
             String resource = "MissileWars-Arena.zip";
 
             Logger.WARN.log("There was no map found with the name \"" + worldName + "\"");
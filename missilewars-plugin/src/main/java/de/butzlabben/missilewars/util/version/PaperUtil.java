@@ -0,0 +1,110 @@
+/*
+ * This file is part of MissileWars (https://github.com/Butzlabben/missilewars).
+ * Copyright (c) 2018-2021 Daniel Nägele.
+ *
+ * MissileWars is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * MissileWars is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with MissileWars.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package de.butzlabben.missilewars.util.version;
+
+import de.butzlabben.missilewars.Logger;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class provides access to some methods of the Paper API. They are called
+ * via reflection, so that the plugin still runs on Spigot.
+ */
+public class PaperUtil {
+
+    private static final Method SET_VIEW_DISTANCE = getMethod(World.class, "setViewDistance", int.class);
+    private static final Method SET_SIMULATION_DISTANCE = getMethod(World.class, "setSimulationDistance", int.class);
+    private static final Method GET_CHUNK_AT_ASYNC = getMethod(World.class, "getChunkAtAsync", int.class, int.class);
+
+    private PaperUtil() {
+    }
+
+    private static Method getMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        try {
+            return clazz.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException exception) {
+            return null;
+        }
+    }
+
+    private static boolean invoke(Method method, Object target, Object... args) {
+        if (method == null) return false;
+
+        try {
+            method.invoke(target, args);
+            return true;
+        } catch (ReflectiveOperationException exception) {
+            Logger.DEBUG.log("Could not call " + method.getName() + ": " + exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * This method sets the view distance of the world.
+     *
+     * @param world (World) the target world
+     * @param distance (int) the view distance in chunks
+     *
+     * @return true, if the server supports it
+     */
+    public static boolean setViewDistance(World world, int distance) {
+        return invoke(SET_VIEW_DISTANCE, world, distance);
+    }
+
+    /**
+     * This method sets the simulation distance of the world.
+     *
+     * @param world (World) the target world
+     * @param distance (int) the simulation distance in chunks
+     *
+     * @return true, if the server supports it
+     */
+    public static boolean setSimulationDistance(World world, int distance) {
+        return invoke(SET_SIMULATION_DISTANCE, world, distance);
+    }
+
+    public static boolean isAsyncChunkLoadingSupported() {
+        return GET_CHUNK_AT_ASYNC != null;
+    }
+
+    /**
+     * This method loads (or generates) the chunk asynchronously. The future is
+     * completed on the server thread.
+     *
+     * @param world (World) the target world
+     * @param x (int) the chunk x coordinate
+     * @param z (int) the chunk z coordinate
+     *
+     * @return (CompletableFuture) the future of the chunk or null, if the server doesn't support it
+     */
+    @SuppressWarnings("unchecked")
+    public static CompletableFuture<Chunk> getChunkAtAsync(World world, int x, int z) {
+        if (GET_CHUNK_AT_ASYNC == null) return null;
+
+        try {
+            return (CompletableFuture<Chunk>) GET_CHUNK_AT_ASYNC.invoke(world, x, z);
+        } catch (ReflectiveOperationException exception) {
+            Logger.DEBUG.log("Could not load chunk asynchronously: " + exception.getMessage());
+            return null;
+        }
+    }
+}
@@ -20,6 +20,7 @@ package de.butzlabben.missilewars.util.version;
 
 import de.butzlabben.missilewars.Logger;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 
 /**
  * @author Butzlabben
@@ -65,4 +66,15 @@ public class VersionUtil {
         return version;
     }
 
+    /**
+     * This method checks if the material is one of the air blocks. Material#isAir()
+     * only exists since 1.14.
+     *
+     * @param material (Material) the material to be checked
+     *
+     * @return true, if it's air
+     */
+    public static boolean isAir(Material material) {
+        return (material == Material.AIR) || (material == Material.CAVE_AIR) || (material == Material.VOID_AIR);
+    }
 }